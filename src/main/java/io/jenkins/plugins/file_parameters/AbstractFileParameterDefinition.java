@@ -24,30 +24,112 @@
 
 package io.jenkins.plugins.file_parameters;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.AbortException;
 import hudson.cli.CLICommand;
 import hudson.model.Failure;
+import hudson.model.Job;
 import hudson.model.ParameterDefinition;
 import hudson.model.ParameterValue;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Run;
 import hudson.util.FormValidation;
-import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import jakarta.servlet.ServletException;
 import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 import net.sf.json.JSONObject;
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
 import org.apache.commons.fileupload2.core.FileItem;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
 import org.apache.commons.fileupload2.core.FileUploadContentTypeException;
+import org.apache.commons.fileupload2.jakarta.servlet5.JakartaServletFileUpload;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest2;
 
 abstract class AbstractFileParameterDefinition extends ParameterDefinition {
 
+    private static final Logger LOGGER = Logger.getLogger(AbstractFileParameterDefinition.class.getName());
+
+    /**
+     * If set, multipart requests to {@code buildWithParameters} are read as a stream,
+     * piping each file part straight into parameter storage in one pass
+     * rather than having the whole body spooled to disk first.
+     * The body can only be read once, so other parameter types will not see multipart fields.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    static boolean STREAM_UPLOADS = SystemProperties.getBoolean(AbstractFileParameterDefinition.class.getName() + ".streamUploads");
+
+    private static final String STREAMED_VALUES = AbstractFileParameterDefinition.class.getName() + ".streamedValues";
+
+    private long maxFileSize;
+
     protected AbstractFileParameterDefinition(String name) {
         super(name);
         Jenkins.checkGoodName(name);
     }
 
+    /**
+     * @return the maximum size in MiB of an uploaded file, or 0 for no limit beyond {@link FileParametersConfiguration#getMaxFileSize}
+     */
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    @DataBoundSetter
+    public void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = Math.max(0, maxFileSize);
+    }
+
+    /**
+     * Rejects an upload known to exceed the effective size limit, before reading any of it.
+     */
+    void checkSize(long size) throws AbortException {
+        long max = FileParametersConfiguration.maxBytes(maxFileSize);
+        if (max >= 0 && size > max) {
+            throw new AbortException("File parameter " + getName() + " exceeds the maximum size of " + max + " bytes");
+        }
+    }
+
+    /**
+     * Applies the effective size limit to an upload of unknown size as it is read.
+     */
+    private InputStream limit(InputStream in) {
+        long max = FileParametersConfiguration.maxBytes(maxFileSize);
+        return max >= 0 ? new LimitedInputStream(in, max) : in;
+    }
+
+    /**
+     * Compares configuration field by field, rather than by serializing both as {@link ParameterDefinition} does.
+     * Subclasses with more fields should extend this.
+     */
+    @Override public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        AbstractFileParameterDefinition other = (AbstractFileParameterDefinition) obj;
+        return getName().equals(other.getName()) && Objects.equals(getDescription(), other.getDescription()) && maxFileSize == other.maxFileSize;
+    }
+
+    @Override public int hashCode() {
+        return Objects.hash(getClass(), getName(), getDescription(), maxFileSize);
+    }
+
     protected Object readResolve() {
         Jenkins.checkGoodName(getName());
         return this;
@@ -55,16 +137,116 @@ abstract class AbstractFileParameterDefinition extends ParameterDefinition {
 
     protected abstract Class<? extends AbstractFileParameterValue> valueType();
 
+    /**
+     * Picks the type of value to bind from a form submission.
+     * @param size the size of the upload, or -1 if unknown
+     */
+    protected Class<? extends AbstractFileParameterValue> valueType(long size) {
+        return valueType();
+    }
+
     protected abstract AbstractFileParameterValue createValue(String name, InputStream src) throws IOException;
 
+    /**
+     * Creates a value from an upload, which the caller deletes afterwards.
+     * Override to take over the upload more cheaply than by reading it.
+     */
+    protected AbstractFileParameterValue createValue(String name, FileItem src) throws IOException {
+        try (InputStream in = src.getInputStream()) {
+            return createValue(name, in);
+        }
+    }
+
+    /**
+     * Creates a value from Base64-encoded content, such as a CLI argument.
+     * By default the content is decoded as it is read, rather than all at once.
+     * Override to keep the encoded form as is.
+     */
+    protected AbstractFileParameterValue createValueFromBase64(String name, String base64) throws IOException {
+        try (InputStream in = Base64FileParameterValue.decode(base64)) {
+            return createValue(name, in);
+        }
+    }
+
+    /**
+     * When submitted for a build already running, as by {@code input}, stashes any stashed upload into that build right away,
+     * so that the value can be returned as a {@link FileParameterHandle}.
+     */
     @Override public ParameterValue createValue(StaplerRequest2 req, JSONObject jo) {
-        AbstractFileParameterValue p = req.bindJSON(valueType(), jo);
+        long size = -1;
+        if (jo.opt("file") instanceof String field) {
+            FileItem src;
+            try {
+                src = req.getFileItem2(field);
+            } catch (ServletException | IOException x) {
+                throw new RuntimeException(x);
+            }
+            if (src != null) {
+                size = src.getSize();
+                try {
+                    checkSize(size);
+                } catch (AbortException x) {
+                    deleteQuietly(src);
+                    throw new Failure(x.getMessage());
+                }
+            }
+        }
+        long start = System.nanoTime();
+        AbstractFileParameterValue p;
+        try {
+            p = req.bindJSON(valueType(size), jo);
+        } catch (RuntimeException x) {
+            // such as a full quota, thrown from the constructor or a setter and wrapped by Stapler
+            for (Throwable t = x; t != null; t = t.getCause()) {
+                if (t instanceof AbortException) {
+                    throw new Failure(t.getMessage());
+                }
+            }
+            throw x;
+        }
+        recordUpload(p, start);
         p.setDescription(getDescription());
+        onCreated(p);
+        Run<?, ?> build = inputBuild(req);
+        if (build != null) {
+            try {
+                onInput(p, build);
+            } catch (IOException | InterruptedException x) {
+                throw new RuntimeException(x);
+            }
+        }
         return p;
     }
 
+    /**
+     * Finds the build whose {@code input} step a request submits parameters to, if any.
+     * Other requests made in the context of a build, such as to rebuild it, must not store content into it.
+     */
+    private static @CheckForNull Run<?, ?> inputBuild(StaplerRequest2 req) {
+        if (Jenkins.get().getPlugin("pipeline-input-step") == null) {
+            return null;
+        }
+        return InputSubmissions.build(req);
+    }
+
+    /**
+     * Called on a value submitted to {@code input}, to store its content into the running build
+     * so that {@link ParameterValue#getValue} may return a {@link FileParameterHandle}.
+     */
+    protected void onInput(@NonNull AbstractFileParameterValue p, @NonNull Run<?, ?> build) throws IOException, InterruptedException {
+        if (p instanceof StashedFileParameterValue sp) {
+            sp.stashInto(build);
+        }
+    }
+
     @Override public ParameterValue createValue(StaplerRequest2 req) {
         try {
+            if (STREAM_UPLOADS && JakartaServletFileUpload.isMultipartContent(req)) {
+                Map<String, AbstractFileParameterValue> values = streamedValues(req);
+                if (values != null) {
+                    return values.get(getName());
+                }
+            }
             FileItem src;
             try {
                 src = req.getFileItem2(getName());
@@ -78,32 +260,169 @@ abstract class AbstractFileParameterDefinition extends ParameterDefinition {
             if (src == null) {
                 return null;
             }
-            AbstractFileParameterValue p;
-            try (InputStream in = src.getInputStream()) {
-                p = createValue(getName(), in);
+            try {
+                checkSize(src.getSize());
+            } catch (AbortException x) {
+                deleteQuietly(src);
+                throw new Failure(x.getMessage());
             }
+            long start = System.nanoTime();
+            AbstractFileParameterValue p = createValue(getName(), src);
+            recordUpload(p, start);
             src.delete();
             p.setDescription(getDescription());
+            onCreated(p);
             p.setFilename(src.getName());
             return p;
+        } catch (AbortException x) {
+            throw new Failure(x.getMessage());
         } catch (ServletException | IOException x) {
             throw new RuntimeException(x);
         }
     }
 
+    /**
+     * Reads all file parts of a multipart request, the first time any file parameter of the job asks for its value.
+     * @return values of file parameters of the job, keyed by name, or null if the request is not made to a job
+     */
+    @SuppressWarnings("unchecked")
+    private static @CheckForNull Map<String, AbstractFileParameterValue> streamedValues(StaplerRequest2 req) throws IOException {
+        Object cached = req.getAttribute(STREAMED_VALUES);
+        if (cached != null) {
+            return (Map<String, AbstractFileParameterValue>) cached;
+        }
+        Job<?, ?> job = req.findAncestorObject(Job.class);
+        ParametersDefinitionProperty pdp = job != null ? job.getProperty(ParametersDefinitionProperty.class) : null;
+        if (pdp == null) {
+            return null;
+        }
+        Map<String, AbstractFileParameterValue> values = new HashMap<>();
+        try {
+            FileItemInputIterator it = new JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory>().getItemIterator(req);
+            while (it.hasNext()) {
+                FileItemInput item = it.next();
+                if (item.isFormField() || values.containsKey(item.getFieldName())) {
+                    continue;
+                }
+                ParameterDefinition d = pdp.getParameterDefinition(item.getFieldName());
+                if (!(d instanceof AbstractFileParameterDefinition)) {
+                    continue;
+                }
+                AbstractFileParameterDefinition fd = (AbstractFileParameterDefinition) d;
+                AbstractFileParameterValue p;
+                long start = System.nanoTime();
+                try (InputStream in = fd.limit(item.getInputStream())) {
+                    p = fd.createValue(d.getName(), in);
+                } catch (AbortException x) {
+                    throw new Failure(x.getMessage());
+                }
+                fd.recordUpload(p, start);
+                p.setDescription(d.getDescription());
+                fd.onCreated(p);
+                if (item.getName() != null) {
+                    p.setFilename(item.getName());
+                }
+                values.put(d.getName(), p);
+            }
+        } catch (IOException | RuntimeException x) {
+            for (AbstractFileParameterValue p : values.values()) {
+                try {
+                    p.discard();
+                } catch (IOException x2) {
+                    LOGGER.log(Level.WARNING, "Could not discard partial upload of " + p.getName(), x2);
+                }
+            }
+            throw x;
+        }
+        req.setAttribute(STREAMED_VALUES, values);
+        return values;
+    }
+
     @Override
     public ParameterValue createValue(CLICommand command, String value) throws IOException, InterruptedException {
         AbstractFileParameterValue p;
+        long start = System.nanoTime();
         if (value.isEmpty()) {
-            p = createValue(getName(), command.stdin);
+            p = createValue(getName(), limit(command.stdin));
         } else {
-            byte[] data = Base64.getDecoder().decode(value);
-            p = createValue(getName(), new ByteArrayInputStream(data));
+            checkSize(Base64FileParameterValue.decodedLength(value));
+            p = createValueFromBase64(getName(), value);
         }
+        recordUpload(p, start);
         p.setDescription(getDescription());
+        onCreated(p);
         return p;
     }
 
+    /**
+     * Called on each value created from a submission, to record any configuration of this definition it needs later,
+     * since the definition may have been edited by the time the value is used.
+     */
+    protected void onCreated(@NonNull AbstractFileParameterValue p) {}
+
+    /**
+     * Records a value just created from an upload in {@link FileParameterMetrics}.
+     * @param start as returned by {@link System#nanoTime} when the upload started to be read
+     */
+    final void recordUpload(AbstractFileParameterValue p, long start) {
+        FileParameterMetrics.upload(getClass().getSimpleName(), p.getSize(), start);
+    }
+
+    private static void deleteQuietly(FileItem src) {
+        try {
+            src.delete();
+        } catch (IOException x) {
+            LOGGER.log(Level.WARNING, "Could not delete rejected upload " + src.getName(), x);
+        }
+    }
+
+    /**
+     * Fails as soon as more than a given number of bytes have been read,
+     * so that an oversized upload is neither read nor stored in full.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private final long max;
+        private long count;
+
+        LimitedInputStream(InputStream in, long max) {
+            super(in);
+            this.max = max;
+        }
+
+        private void count(long n) throws AbortException {
+            if (n > 0) {
+                count += n;
+                if (count > max) {
+                    throw new AbortException("File parameter exceeds the maximum size of " + max + " bytes");
+                }
+            }
+        }
+
+        @Override public int read() throws IOException {
+            int b = super.read();
+            count(b == -1 ? 0 : 1);
+            return b;
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            count(n);
+            return n;
+        }
+
+        @Override public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override public boolean markSupported() {
+            return false;
+        }
+
+    }
+
     protected static abstract class AbstractFileParameterDefinitionDescriptor extends ParameterDescriptor {
 
         public FormValidation doCheckName(@QueryParameter String name) {
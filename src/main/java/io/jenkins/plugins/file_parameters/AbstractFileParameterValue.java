@@ -27,21 +27,37 @@ package io.jenkins.plugins.file_parameters;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.EnvVars;
+import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.Util;
 import hudson.model.Failure;
+import hudson.model.Fingerprint;
 import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.tasks.Fingerprinter;
 import java.io.File;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.servlet.http.HttpServletResponse;
 import jenkins.model.Jenkins;
 import org.apache.commons.io.IOUtils;
 import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest2;
 import org.kohsuke.stapler.StaplerResponse2;
 
 /**
@@ -49,8 +65,19 @@ import org.kohsuke.stapler.StaplerResponse2;
  */
 public abstract class AbstractFileParameterValue extends ParameterValue {
 
+    private static final Logger LOGGER = Logger.getLogger(AbstractFileParameterValue.class.getName());
+
     private @CheckForNull String filename;
 
+    /** Hex SHA-256 of the file content, if known. */
+    private @CheckForNull String sha256;
+
+    /** Size of the file content in bytes; only meaningful when {@link #sha256} is set. */
+    private long size;
+
+    /** Hex MD5 of the file content, if known; used only for fingerprints. */
+    private @CheckForNull String md5;
+
     protected AbstractFileParameterValue(String name) {
         super(name);
     }
@@ -65,6 +92,81 @@ public abstract class AbstractFileParameterValue extends ParameterValue {
         this.filename = new File(filename).getName();
     }
 
+    final @CheckForNull String getSha256() {
+        return sha256;
+    }
+
+    final long getSize() {
+        return size;
+    }
+
+    final @CheckForNull String getMd5() {
+        return md5;
+    }
+
+    final void setDigest(long size, @NonNull String sha256, @CheckForNull String md5) {
+        this.size = size;
+        this.sha256 = sha256;
+        this.md5 = md5;
+    }
+
+    final void setDigest(long size, @NonNull Digests digests) {
+        setDigest(size, digests.sha256Hex(), digests.md5Hex());
+    }
+
+    /**
+     * Gets the SHA-256 of the content, computing it if needed and cheap enough.
+     */
+    @CheckForNull String digest(@CheckForNull Run<?,?> build) throws IOException {
+        return sha256;
+    }
+
+    /**
+     * Deletes any storage held for a value which will never be used by a build.
+     */
+    void discard() throws IOException {}
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException x) {
+            throw new AssertionError(x);
+        }
+    }
+
+    static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException x) {
+            throw new AssertionError(x);
+        }
+    }
+
+    /**
+     * Computes the SHA-256 of content as it is read, along with the MD5 Jenkins uses for fingerprints,
+     * so that neither needs another pass over the content.
+     */
+    static final class Digests {
+
+        private final MessageDigest sha256 = AbstractFileParameterValue.sha256();
+        private final MessageDigest md5 = AbstractFileParameterValue.md5();
+
+        InputStream digesting(InputStream in) {
+            return new DigestInputStream(new DigestInputStream(in, sha256), md5);
+        }
+
+        /** May only be called once, after the content has been read. */
+        String sha256Hex() {
+            return Util.toHexString(sha256.digest());
+        }
+
+        /** May only be called once, after the content has been read. */
+        String md5Hex() {
+            return Util.toHexString(md5.digest());
+        }
+
+    }
+
     protected InputStream open(@CheckForNull Run<?,?> build) throws IOException, InterruptedException {
         assert Util.isOverridden(AbstractFileParameterValue.class, getClass(), "createTempFile", Run.class, FilePath.class, EnvVars.class, Launcher.class, TaskListener.class);
         if (build == null) {
@@ -86,28 +188,215 @@ public abstract class AbstractFileParameterValue extends ParameterValue {
     }
 
     protected FilePath createTempFile(@NonNull Run<?,?> build, @NonNull FilePath tempDir, @NonNull EnvVars env, @NonNull Launcher launcher, @NonNull TaskListener listener) throws IOException, InterruptedException {
+        return copyToTempFile(build, tempDir, false, listener);
+    }
+
+    /**
+     * Like {@link #createTempFile(Run, FilePath, EnvVars, Launcher, TaskListener)},
+     * but if requested, content read from {@link #open} is compressed on its way to an agent.
+     */
+    final FilePath createTempFile(@NonNull Run<?,?> build, @NonNull FilePath tempDir, @NonNull EnvVars env, @NonNull Launcher launcher, @NonNull TaskListener listener, boolean compress) throws IOException, InterruptedException {
+        if (compress && !Util.isOverridden(AbstractFileParameterValue.class, getClass(), "createTempFile", Run.class, FilePath.class, EnvVars.class, Launcher.class, TaskListener.class)) {
+            return copyToTempFile(build, tempDir, true, listener);
+        }
+        return createTempFile(build, tempDir, env, launcher, listener);
+    }
+
+    private FilePath copyToTempFile(@NonNull Run<?,?> build, @NonNull FilePath tempDir, boolean compress, @NonNull TaskListener listener) throws IOException, InterruptedException {
         assert Util.isOverridden(AbstractFileParameterValue.class, getClass(), "open", Run.class);
         FilePath f = tempDir.createTempFile(name.length() >= 3 ? name : "fileparam", null);
         try (InputStream is = open(build)) {
-            f.copyFrom(is);
+            if (compress && f.isRemote()) {
+                long sent = CompressedTransfer.copy(is, f);
+                if (sent < 0) {
+                    listener.getLogger().println("Content of " + name + " does not compress; copying it as is");
+                } else {
+                    listener.getLogger().println("Copied content of " + name + " compressed to " + sent + " bytes");
+                }
+            } else {
+                f.copyFrom(is);
+            }
         }
         return f;
     }
 
+    /**
+     * Opens the content starting at a given byte offset.
+     * Override if that can be done more cheaply than by skipping.
+     */
+    InputStream open(@CheckForNull Run<?,?> build, long offset) throws IOException, InterruptedException {
+        InputStream is = open(build);
+        try {
+            IOUtils.skipFully(is, offset);
+        } catch (IOException x) {
+            is.close();
+            throw x;
+        }
+        return is;
+    }
+
+    /**
+     * Serves the content.
+     * When its digest is known, this sends it as a strong {@code ETag} along with {@code Content-Length},
+     * answers {@code If-None-Match} with 304, and serves a single byte range, as resumed downloads request.
+     * Request headers are read from the current request, keeping the signature binary compatible.
+     */
     public void doDownload(@AncestorInPath Run<?,?> build, StaplerResponse2 rsp) throws Exception {
+        StaplerRequest2 req = Stapler.getCurrentRequest2();
         rsp.setContentType("application/octet-stream");
-        try (InputStream is = open(build); OutputStream os = rsp.getOutputStream()) {
-            IOUtils.copy(is, os);
+        String sha256 = digest(build);
+        long start = 0;
+        long length = -1;
+        if (sha256 != null) {
+            long size = getSize();
+            String etag = '"' + sha256 + '"';
+            rsp.setHeader("ETag", etag);
+            rsp.setHeader("Accept-Ranges", "bytes");
+            if (matches(req.getHeader("If-None-Match"), etag)) {
+                rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            length = size;
+            String range = req.getHeader("Range");
+            String ifRange = req.getHeader("If-Range");
+            if (range != null && (ifRange == null || ifRange.equals(etag))) {
+                long[] bounds = parseRange(range, size);
+                if (bounds != null && bounds.length == 0) {
+                    rsp.setHeader("Content-Range", "bytes */" + size);
+                    rsp.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                } else if (bounds != null) {
+                    start = bounds[0];
+                    length = bounds[1] - bounds[0] + 1;
+                    rsp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    rsp.setHeader("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + size);
+                }
+            }
+            rsp.setContentLengthLong(length);
+        }
+        try (InputStream is = open(build, start); OutputStream os = rsp.getOutputStream()) {
+            if (length >= 0) {
+                IOUtils.copyLarge(is, os, 0, length);
+            } else {
+                IOUtils.copy(is, os);
+            }
+        }
+    }
+
+    private static boolean matches(@CheckForNull String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(etag) || candidate.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses a {@code Range} header with a single byte range.
+     * @return inclusive first and last byte positions; an empty array if unsatisfiable; null to ignore the header
+     */
+    static @CheckForNull long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.contains(",")) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    return new long[0];
+                }
+                return new long[] {Math.max(0, size - suffix), size - 1};
+            }
+            long from = Long.parseLong(first);
+            long to = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (from < 0 || to < from) {
+                return from >= size ? new long[0] : null;
+            }
+            return new long[] {from, to};
+        } catch (NumberFormatException x) {
+            return null;
+        }
+    }
+
+    /**
+     * Compares content by digest, never reading it, so that identical queued builds can be coalesced.
+     * Values whose digest is not yet known are only equal to themselves.
+     */
+    @Override public boolean equals(Object obj) {
+        if (!super.equals(obj)) {
+            return false;
+        }
+        AbstractFileParameterValue other = (AbstractFileParameterValue) obj;
+        if (sha256 == null || other.sha256 == null) {
+            return this == other;
         }
+        return sha256.equals(other.sha256) && size == other.size && Objects.equals(filename, other.filename);
+    }
+
+    /**
+     * Hashes only what is fixed when the value is created, since the digest may only be computed later,
+     * as for a value loaded from an older build, while the value is held in a hashed collection.
+     */
+    @Override public int hashCode() {
+        return Objects.hash(getClass(), super.hashCode(), filename);
     }
 
-    // TODO equals/hashCode
-    
     @Override public void buildEnvironment(Run<?, ?> build, EnvVars env) {
         String fname = getFilename();
         if (fname != null) {
             env.put(name + "_FILENAME", fname);
         }
+        if (sha256 != null) {
+            env.put(name + "_SHA256", sha256);
+        }
+    }
+
+    /**
+     * Records each file parameter of a build as a fingerprint, using the MD5 computed on upload.
+     */
+    @Extension
+    public static class FingerprintingRunListener extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onInitialize(Run<?, ?> r) {
+            ParametersAction pa = r.getAction(ParametersAction.class);
+            if (pa == null) {
+                return;
+            }
+            Map<String, String> fingerprints = new HashMap<>();
+            for (ParameterValue pv : pa.getAllParameters()) {
+                if (pv instanceof AbstractFileParameterValue p && p.md5 != null) {
+                    String fileName = p.filename != null ? p.filename : p.name;
+                    try {
+                        Fingerprint fp = Jenkins.get().getFingerprintMap().getOrCreate(null, fileName, p.md5);
+                        fp.addFor(r);
+                        fingerprints.put(fileName, p.md5);
+                    } catch (IOException x) {
+                        LOGGER.log(Level.WARNING, "Could not record fingerprint of " + p.name + " in " + r, x);
+                    }
+                }
+            }
+            if (!fingerprints.isEmpty()) {
+                Fingerprinter.FingerprintAction action = r.getAction(Fingerprinter.FingerprintAction.class);
+                if (action != null) {
+                    action.add(fingerprints);
+                } else {
+                    r.addAction(new Fingerprinter.FingerprintAction(r, fingerprints));
+                }
+            }
+        }
     }
 
 }
@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.file_parameters;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.util.SystemProperties;
+
+/**
+ * Cache of file parameter content on agents, keyed by SHA-256, so that repeated bindings on the same agent avoid a transfer.
+ * Entries are copied rather than linked in and out, since builds may modify the files they are given.
+ */
+final class AgentFileCache {
+
+    /**
+     * Maximum total size in bytes of the cache on each agent; 0, the default, disables it.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    static long MAX_SIZE = SystemProperties.getLong(AgentFileCache.class.getName() + ".maxSize", 0L);
+
+    private AgentFileCache() {}
+
+    /**
+     * Locates the cache for the agent holding a workspace.
+     * @return null if caching is disabled or pointless, as on the controller
+     */
+    static @CheckForNull FilePath of(@NonNull FilePath workspace) {
+        if (MAX_SIZE <= 0 || !workspace.isRemote()) {
+            return null;
+        }
+        Computer c = workspace.toComputer();
+        Node n = c != null ? c.getNode() : null;
+        FilePath root = n != null ? n.getRootPath() : null;
+        return root != null ? root.child("fileParameterCache") : null;
+    }
+
+    /**
+     * Copies a cached entry to a new temporary file.
+     * @return the copy, or null if the content is not cached
+     */
+    static @CheckForNull FilePath fetch(@NonNull FilePath cache, @NonNull String sha256, @NonNull FilePath tempDir, @NonNull String prefix) throws IOException, InterruptedException {
+        String copy = cache.act(new Fetch(sha256, tempDir.getRemote(), prefix));
+        return copy != null ? tempDir.child(copy) : null;
+    }
+
+    /**
+     * Adds a copy of a file to the cache, evicting the least recently used entries if it gets too large.
+     */
+    static void put(@NonNull FilePath cache, @NonNull String sha256, @NonNull FilePath source) throws IOException, InterruptedException {
+        cache.act(new Put(sha256, source.getRemote(), MAX_SIZE));
+    }
+
+    private static final class Fetch extends MasterToSlaveFileCallable<String> {
+
+        private static final long serialVersionUID = 1;
+
+        private final String sha256;
+        private final String tempDir;
+        private final String prefix;
+
+        Fetch(String sha256, String tempDir, String prefix) {
+            this.sha256 = sha256;
+            this.tempDir = tempDir;
+            this.prefix = prefix;
+        }
+
+        @Override public String invoke(File dir, VirtualChannel channel) throws IOException, InterruptedException {
+            Path entry = dir.toPath().resolve(sha256);
+            if (!Files.isRegularFile(entry)) {
+                return null;
+            }
+            Path copy = Files.createTempFile(Path.of(tempDir), prefix, null);
+            try {
+                Files.copy(entry, copy, StandardCopyOption.REPLACE_EXISTING);
+            } catch (NoSuchFileException x) {
+                // evicted meanwhile
+                Files.deleteIfExists(copy);
+                return null;
+            }
+            // mark as recently used
+            entry.toFile().setLastModified(System.currentTimeMillis());
+            return copy.getFileName().toString();
+        }
+
+    }
+
+    private static final class Put extends MasterToSlaveFileCallable<Void> {
+
+        private static final long serialVersionUID = 1;
+
+        private final String sha256;
+        private final String source;
+        private final long maxSize;
+
+        Put(String sha256, String source, long maxSize) {
+            this.sha256 = sha256;
+            this.source = source;
+            this.maxSize = maxSize;
+        }
+
+        @Override public Void invoke(File dir, VirtualChannel channel) throws IOException, InterruptedException {
+            Path src = Path.of(source);
+            if (Files.size(src) > maxSize) {
+                return null;
+            }
+            Files.createDirectories(dir.toPath());
+            Path tmp = Files.createTempFile(dir.toPath(), sha256, ".tmp");
+            try {
+                Files.copy(src, tmp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmp, dir.toPath().resolve(sha256), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            File[] entries = dir.listFiles((d, n) -> !n.endsWith(".tmp"));
+            if (entries == null) {
+                return null;
+            }
+            Arrays.sort(entries, Comparator.comparingLong(File::lastModified).reversed());
+            long total = 0;
+            for (File entry : entries) {
+                total += entry.length();
+                if (total > maxSize) {
+                    Files.deleteIfExists(entry.toPath());
+                }
+            }
+            return null;
+        }
+
+    }
+
+}
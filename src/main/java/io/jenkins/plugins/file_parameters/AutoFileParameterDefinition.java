@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.file_parameters;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.util.FormValidation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import org.apache.commons.fileupload2.core.FileItem;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+/**
+ * File parameter which keeps small files inline, like {@link Base64FileParameterDefinition},
+ * and stashes larger ones, like {@link StashedFileParameterDefinition}.
+ * Either way the content is meant to be used through {@code withFileParameter}, so inline values export no content to the environment,
+ * and once their build starts, their {@link Base64FileParameterValue#getValue} is a {@link FileParameterHandle} like that of stashed values,
+ * rather than the Base64 content.
+ */
+public final class AutoFileParameterDefinition extends AbstractFileParameterDefinition {
+
+    static final long DEFAULT_THRESHOLD = 64;
+
+    /** Largest threshold allowed, since files up to the threshold are buffered in memory and kept in the build record. */
+    static final long MAX_THRESHOLD = 1024;
+
+    private @CheckForNull Long threshold;
+
+    @DataBoundConstructor public AutoFileParameterDefinition(String name) {
+        super(name);
+    }
+
+    /**
+     * @return the size in KiB up to which files are kept inline, or 0 to stash all files
+     */
+    public long getThreshold() {
+        return threshold != null ? threshold : DEFAULT_THRESHOLD;
+    }
+
+    /**
+     * @param threshold clamped to between 0 and {@link #MAX_THRESHOLD}
+     */
+    @DataBoundSetter public void setThreshold(long threshold) {
+        this.threshold = threshold == DEFAULT_THRESHOLD ? null : Math.min(Math.max(0, threshold), MAX_THRESHOLD);
+    }
+
+    /**
+     * @param size the size of the content, or -1 if unknown, in which case it is stashed rather than buffered without bound
+     */
+    private boolean inline(long size) {
+        return getThreshold() > 0 && size >= 0 && size <= getThreshold() * 1024;
+    }
+
+    @Override protected void onCreated(@NonNull AbstractFileParameterValue p) {
+        if (p instanceof Base64FileParameterValue b) {
+            b.setExport(Base64FileParameterDefinition.Export.NONE);
+            b.setHandle();
+        }
+    }
+
+    @Override protected void onInput(@NonNull AbstractFileParameterValue p, @NonNull Run<?, ?> build) throws IOException, InterruptedException {
+        if (p instanceof Base64FileParameterValue b) {
+            b.externalizeInto(build);
+        } else {
+            super.onInput(p, build);
+        }
+    }
+
+    @Override protected Class<? extends AbstractFileParameterValue> valueType() {
+        return StashedFileParameterValue.class;
+    }
+
+    @Override protected Class<? extends AbstractFileParameterValue> valueType(long size) {
+        return inline(size) ? Base64FileParameterValue.class : StashedFileParameterValue.class;
+    }
+
+    /**
+     * Buffers up to the threshold; if the stream ends by then, the value is inline,
+     * else the buffer and the rest of the stream go to stashed storage, so the content is still read only once.
+     */
+    @Override protected AbstractFileParameterValue createValue(String name, InputStream src) throws IOException {
+        if (getThreshold() == 0) {
+            return new StashedFileParameterValue(name, src);
+        }
+        byte[] head = src.readNBytes((int) getThreshold() * 1024 + 1);
+        if (inline(head.length)) {
+            return new Base64FileParameterValue(name, new ByteArrayInputStream(head), head.length);
+        }
+        return new StashedFileParameterValue(name, new SequenceInputStream(new ByteArrayInputStream(head), src));
+    }
+
+    @Override protected AbstractFileParameterValue createValue(String name, FileItem src) throws IOException {
+        if (!inline(src.getSize())) {
+            return new StashedFileParameterValue(name, src);
+        }
+        try (InputStream in = src.getInputStream()) {
+            return new Base64FileParameterValue(name, in, src.getSize());
+        }
+    }
+
+    @Override protected AbstractFileParameterValue createValueFromBase64(String name, String base64) throws IOException {
+        if (inline(Base64FileParameterValue.decodedLength(base64))) {
+            return Base64FileParameterValue.fromBase64(name, base64);
+        }
+        return super.createValueFromBase64(name, base64);
+    }
+
+    @Override public boolean equals(Object obj) {
+        return super.equals(obj) && getThreshold() == ((AutoFileParameterDefinition) obj).getThreshold();
+    }
+
+    @Override public int hashCode() {
+        return 31 * super.hashCode() + Long.hashCode(getThreshold());
+    }
+
+    @Symbol("autoFile")
+    @Extension public static final class DescriptorImpl extends AbstractFileParameterDefinitionDescriptor {
+
+        @Override public String getDisplayName() {
+            return "Auto File Parameter";
+        }
+
+        public FormValidation doCheckThreshold(@QueryParameter long value) {
+            if (value < 0 || value > MAX_THRESHOLD) {
+                return FormValidation.error("Must be between 0 and " + MAX_THRESHOLD + " KiB");
+            }
+            return FormValidation.ok();
+        }
+
+    }
+
+}
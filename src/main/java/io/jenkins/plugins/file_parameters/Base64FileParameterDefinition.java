@@ -24,18 +24,98 @@
 
 package io.jenkins.plugins.file_parameters;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
+import hudson.model.ParameterDefinition;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Run;
 import java.io.IOException;
 import java.io.InputStream;
+import org.apache.commons.fileupload2.core.FileItem;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 public final class Base64FileParameterDefinition extends AbstractFileParameterDefinition {
 
+    /**
+     * What a Base64 file parameter contributes to the build environment besides {@code NAME_FILENAME}.
+     */
+    public enum Export {
+        BASE64("Base64-encoded content"),
+        METADATA("Only size and SHA-256"),
+        NONE("Nothing");
+
+        private final String displayName;
+
+        Export(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private Export export;
+
+    private boolean handle;
+
     @DataBoundConstructor public Base64FileParameterDefinition(String name) {
         super(name);
     }
 
+    public @NonNull Export getExport() {
+        return export != null ? export : Export.BASE64;
+    }
+
+    @DataBoundSetter public void setExport(Export export) {
+        this.export = export == Export.BASE64 ? null : export;
+    }
+
+    public boolean isHandle() {
+        return handle;
+    }
+
+    /**
+     * If set, a file submitted to {@code input} is externalized into the build directory,
+     * and {@code input} returns a {@link FileParameterHandle} to it rather than the Base64 content.
+     */
+    @DataBoundSetter public void setHandle(boolean handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * Looks up the export mode currently configured for a parameter of a build's job.
+     * Values passed by the {@code build} step do not go through their definition, so this is recorded on them when the build starts.
+     * Small files of an {@link AutoFileParameterDefinition} export nothing, just as if they had been stashed.
+     */
+    static @NonNull Export exportOf(@NonNull Run<?, ?> build, @NonNull String name) {
+        ParameterDefinition d = definitionOf(build, name);
+        if (d instanceof AutoFileParameterDefinition) {
+            return Export.NONE;
+        }
+        return d instanceof Base64FileParameterDefinition ? ((Base64FileParameterDefinition) d).getExport() : Export.BASE64;
+    }
+
+    static @CheckForNull ParameterDefinition definitionOf(@NonNull Run<?, ?> build, @NonNull String name) {
+        ParametersDefinitionProperty pdp = build.getParent().getProperty(ParametersDefinitionProperty.class);
+        return pdp != null ? pdp.getParameterDefinition(name) : null;
+    }
+
+    @Override protected void onCreated(@NonNull AbstractFileParameterValue p) {
+        if (p instanceof Base64FileParameterValue b) {
+            b.setExport(getExport());
+        }
+    }
+
+    @Override protected void onInput(@NonNull AbstractFileParameterValue p, @NonNull Run<?, ?> build) throws IOException, InterruptedException {
+        if (handle && p instanceof Base64FileParameterValue b) {
+            b.externalizeInto(build);
+        }
+    }
+
     @Override protected Class<? extends AbstractFileParameterValue> valueType() {
         return Base64FileParameterValue.class;
     }
@@ -44,7 +124,26 @@ public final class Base64FileParameterDefinition extends AbstractFileParameterDe
         return new Base64FileParameterValue(name, src);
     }
 
-    // TODO equals/hashCode
+    /**
+     * Passes on the size of the upload, so that the encoded form is written into a single buffer of its final length.
+     */
+    @Override protected AbstractFileParameterValue createValue(String name, FileItem src) throws IOException {
+        try (InputStream in = src.getInputStream()) {
+            return new Base64FileParameterValue(name, in, src.getSize());
+        }
+    }
+
+    @Override protected AbstractFileParameterValue createValueFromBase64(String name, String base64) throws IOException {
+        return Base64FileParameterValue.fromBase64(name, base64);
+    }
+
+    @Override public boolean equals(Object obj) {
+        return super.equals(obj) && getExport() == ((Base64FileParameterDefinition) obj).getExport() && handle == ((Base64FileParameterDefinition) obj).handle;
+    }
+
+    @Override public int hashCode() {
+        return 31 * (31 * super.hashCode() + getExport().hashCode()) + Boolean.hashCode(handle);
+    }
 
     @Symbol("base64File")
     @Extension public static final class DescriptorImpl extends AbstractFileParameterDefinitionDescriptor {
@@ -24,55 +24,440 @@
 
 package io.jenkins.plugins.file_parameters;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.EnvVars;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.InvisibleAction;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
 import hudson.model.Run;
-import java.io.ByteArrayInputStream;
+import hudson.model.listeners.RunListener;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.RunAction2;
+import jenkins.util.SystemProperties;
 import org.apache.commons.fileupload2.core.FileItem;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CharSequenceInputStream;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 
 @Symbol("base64File")
 public final class Base64FileParameterValue extends AbstractFileParameterValue {
-    
-    private String base64;
+
+    private static final Logger LOGGER = Logger.getLogger(Base64FileParameterValue.class.getName());
+
+    /**
+     * If set, payloads are moved out of {@code build.xml} into a file in the build directory when the build starts.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    static boolean EXTERNALIZE = SystemProperties.getBoolean(Base64FileParameterValue.class.getName() + ".externalize");
+
+    /**
+     * Maximum number of Base64 characters of externalized payloads to keep in memory.
+     * Entries are also softly referenced, so they may be dropped earlier under memory pressure.
+     */
+    private static final long CACHE_SIZE = SystemProperties.getLong(Base64FileParameterValue.class.getName() + ".cacheSize", 64L * 1024 * 1024);
+
+    private static final Cache<String, String> CACHE = CacheBuilder.newBuilder().
+            softValues().
+            maximumWeight(CACHE_SIZE).
+            weigher((String path, String payload) -> payload.length()).
+            build();
+
+    private static final String EXTERNAL_DIR = "fileParameters";
+
+    private @CheckForNull String base64;
+
+    /** Name of the file under {@link #EXTERNAL_DIR} of the build directory holding the payload, if externalized. */
+    private @CheckForNull String externalFile;
+
+    /** How the content is exported to the environment, as configured when this value was created or its build started; null for older values, which export Base64. */
+    private @CheckForNull Base64FileParameterDefinition.Export export;
+
+    /** Build owning {@link #externalFile}. */
+    private transient @CheckForNull Run<?, ?> owner;
+
+    /** Whether {@link #getValue} refers to the payload with a {@link FileParameterHandle} once externalized, and is null until then, rather than returning it. */
+    private boolean handle;
 
     @DataBoundConstructor public Base64FileParameterValue(String name) throws IOException {
         super(name);
     }
 
     @DataBoundSetter public void setFile(FileItem file) throws IOException {
-        base64 = Base64.getEncoder().encodeToString(IOUtils.toByteArray(file.getInputStream()));
+        Digests digests = new Digests();
+        try (InputStream in = digests.digesting(file.getInputStream())) {
+            base64 = encode(in, file.getSize());
+        }
+        setDigest(decodedLength(base64), digests);
         setFilename(file.getName());
         file.delete();
     }
 
+    /**
+     * Reads a payload externalized into another build, whose directory is given to {@link #open}.
+     */
+    Base64FileParameterValue(FileParameterHandle from) {
+        super(from.getName());
+        externalFile = from.getExternal();
+        if (from.getFilename() != null) {
+            setFilename(from.getFilename());
+        }
+        if (from.getSha256() != null) {
+            setDigest(from.getSize(), from.getSha256(), from.getMd5());
+        }
+    }
+
     Base64FileParameterValue(String name, InputStream src) throws IOException {
+        this(name, src, -1);
+    }
+
+    /**
+     * @param size the number of bytes {@code src} will deliver, or -1 if unknown, as passed to {@link #encode}
+     */
+    Base64FileParameterValue(String name, InputStream src, long size) throws IOException {
         super(name);
-        base64 = Base64.getEncoder().encodeToString(IOUtils.toByteArray(src));
+        Digests digests = new Digests();
+        base64 = encode(digests.digesting(src), size);
+        setDigest(decodedLength(base64), digests);
     }
 
-    @DataBoundSetter public void setBase64(String base64) throws IOException {
+    /**
+     * Creates a value from content which is already Base64-encoded, keeping the string as is.
+     * It is decoded once, as a stream, to validate it and compute its size and digest.
+     * Unpadded input is decoded and re-encoded so that the stored form is always canonical.
+     */
+    static Base64FileParameterValue fromBase64(String name, String base64) throws IOException {
+        if (base64.length() % 4 != 0) {
+            try (InputStream in = decode(base64)) {
+                return new Base64FileParameterValue(name, in);
+            }
+        }
+        Base64FileParameterValue value = new Base64FileParameterValue(name);
+        value.setBase64(base64);
+        return value;
+    }
+
+    /**
+     * Encodes a stream without ever holding the raw content in memory.
+     * When the size is known up front the encoded buffer is allocated once at its final length,
+     * so the only large allocations are that buffer and the resulting {@link String}.
+     * @param size the number of bytes {@code src} will deliver, or -1 if unknown
+     */
+    static String encode(InputStream src, long size) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(size >= 0 ? encodedLength(size) : 8192);
+        try (OutputStream out = Base64.getEncoder().wrap(buf)) {
+            IOUtils.copy(src, out);
+        }
+        // Base64 output is pure ASCII, so this is a single copy into a compact Latin-1 string.
+        return buf.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    private static int encodedLength(long size) throws IOException {
+        long length = 4 * ((size + 2) / 3);
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("File of " + size + " bytes is too large to be held as a Base64 parameter");
+        }
+        return (int) length;
+    }
+
+    /**
+     * Computes the number of bytes encoded by well-formed Base64 without decoding it.
+     */
+    static long decodedLength(String base64) {
+        int length = base64.length();
+        int padding = 0;
+        while (padding < 2 && length > padding && base64.charAt(length - 1 - padding) == '=') {
+            padding++;
+        }
+        return (long) length / 4 * 3 - padding;
+    }
+
+    /**
+     * Also computes the digest, so that it is recorded along with the payload.
+     */
+    @DataBoundSetter public synchronized void setBase64(String base64) throws IOException {
         this.base64 = base64;
+        externalFile = null;
+        if (base64 != null) {
+            digestPayload(base64);
+        }
+    }
+
+    private void digestPayload(@NonNull String payload) throws IOException {
+        Digests digests = new Digests();
+        long size;
+        try (InputStream in = digests.digesting(decode(payload))) {
+            size = IOUtils.consume(in);
+        }
+        setDigest(size, digests);
+    }
+
+    /**
+     * Gets the payload, loading it from the build directory if it was externalized.
+     */
+    private synchronized @CheckForNull String base64(@CheckForNull Run<?, ?> build) throws IOException {
+        if (base64 != null || externalFile == null) {
+            return base64;
+        }
+        if (owner == null) {
+            owner = build;
+        }
+        if (owner == null) {
+            throw new IOException("Cannot load externalized parameter " + name + " outside of a build context");
+        }
+        File f = new File(new File(owner.getRootDir(), EXTERNAL_DIR), externalFile);
+        try {
+            return CACHE.get(f.getAbsolutePath(), () -> load(f));
+        } catch (ExecutionException x) {
+            throw new IOException("Failed to load parameter " + name + " from " + f, x.getCause());
+        }
+    }
+
+    private String load(File f) throws IOException {
+        String payload = Files.readString(f.toPath(), StandardCharsets.ISO_8859_1);
+        String expected = getSha256();
+        if (expected != null) {
+            MessageDigest md = sha256();
+            long size;
+            try (InputStream in = new DigestInputStream(decode(payload), md)) {
+                size = IOUtils.consume(in);
+            }
+            if (size != getSize() || !expected.equals(Util.toHexString(md.digest()))) {
+                throw new IOException(f + " does not match the recorded size and SHA-256");
+            }
+        }
+        return payload;
+    }
+
+    /**
+     * Moves the payload into the build directory so that {@code build.xml} only records a reference to it.
+     * A value already externalized by another build, as when reused by a replay or rebuild, is copied,
+     * since the original build may be deleted first.
+     * @return whether a file was written
+     */
+    private synchronized boolean externalize(@NonNull Run<?, ?> build) throws IOException {
+        String payload;
+        if (base64 != null) {
+            payload = base64;
+        } else if (externalFile != null && owner != null && owner != build) {
+            payload = base64(owner);
+        } else {
+            return false;
+        }
+        digest(build);
+        write(build, payload, Util.rawEncode(name) + ".b64");
+        return true;
+    }
+
+    /**
+     * Moves the payload into a running build to which it was submitted through {@code input},
+     * so that {@link #getValue} can refer to it with a {@link FileParameterHandle}.
+     * It gets a file name of its own, since several values of one parameter may be submitted to the same build.
+     */
+    synchronized void externalizeInto(@NonNull Run<?, ?> build) throws IOException {
+        String payload = base64(build);
+        if (payload == null) {
+            return;
+        }
+        write(build, payload, Util.rawEncode(name) + "-" + UUID.randomUUID() + ".b64");
+        handle = true;
+    }
+
+    private void write(@NonNull Run<?, ?> build, @NonNull String payload, @NonNull String fileName) throws IOException {
+        File dir = new File(build.getRootDir(), EXTERNAL_DIR);
+        Files.createDirectories(dir.toPath());
+        File f = new File(dir, fileName);
+        try (Writer w = Files.newBufferedWriter(f.toPath(), StandardCharsets.ISO_8859_1)) {
+            w.write(payload);
+        }
+        CACHE.put(f.getAbsolutePath(), payload);
+        owner = build;
+        externalFile = fileName;
+        base64 = null;
+    }
+
+    /**
+     * Gets the SHA-256 of the content, computing it for a value loaded from a build predating recorded digests.
+     */
+    @Override synchronized @CheckForNull String digest(@CheckForNull Run<?, ?> build) throws IOException {
+        String sha256 = getSha256();
+        if (sha256 == null) {
+            String payload = base64(build);
+            if (payload == null) {
+                return null;
+            }
+            digestPayload(payload);
+            sha256 = getSha256();
+        }
+        return sha256;
     }
 
     @Override public void buildEnvironment(Run<?, ?> build, EnvVars env) {
         super.buildEnvironment(build, env);
-        env.put(name, base64);
+        try {
+            switch (export != null ? export : Base64FileParameterDefinition.Export.BASE64) {
+            case BASE64:
+                env.put(name, base64(build));
+                break;
+            case METADATA:
+                if (getSha256() != null) {
+                    env.put(name + "_SIZE", Long.toString(getSize()));
+                }
+                break;
+            case NONE:
+                break;
+            }
+        } catch (IOException x) {
+            throw new RuntimeException(x);
+        }
+    }
+
+    void setExport(@NonNull Base64FileParameterDefinition.Export export) {
+        this.export = export;
+    }
+
+    synchronized void setHandle() {
+        handle = true;
+    }
+
+    synchronized boolean isHandle() {
+        return handle;
     }
 
     // TODO createVariableResolver if desired for freestyle
 
-    @Override public Object getValue() {
-        return base64;
+    /**
+     * @return the Base64 payload, or if it is to be referred to by handle, a {@link FileParameterHandle} once externalized, else null
+     */
+    @Override public synchronized Object getValue() {
+        if (handle) {
+            return externalFile != null && owner != null ? FileParameterHandle.external(name, externalFile, owner, getFilename(), getSize(), getSha256(), getMd5()) : null;
+        }
+        try {
+            return base64(null);
+        } catch (IOException x) {
+            throw new RuntimeException(x);
+        }
     }
 
+    /**
+     * Decodes lazily from the stored characters, so reading costs a small fixed buffer whatever the file size.
+     */
     @Override protected InputStream open(Run<?, ?> build) throws IOException {
-        return new ByteArrayInputStream(Base64.getDecoder().decode(base64));
+        return decode(base64(build));
+    }
+
+    /**
+     * Starts decoding at the Base64 quantum holding the offset, so skipped content is never decoded.
+     */
+    @Override InputStream open(Run<?, ?> build, long offset) throws IOException {
+        String payload = base64(build);
+        int start = (int) Math.min(offset / 3 * 4, payload.length());
+        InputStream is = decode(CharBuffer.wrap(payload, start, payload.length()));
+        IOUtils.skipFully(is, offset - start / 4 * 3L);
+        return is;
+    }
+
+    static InputStream decode(CharSequence base64) throws IOException {
+        return Base64.getDecoder().wrap(CharSequenceInputStream.builder().setCharSequence(base64).setCharset(StandardCharsets.ISO_8859_1).get());
+    }
+
+    /**
+     * Remembers the owning build of externalized payloads, which are stored relative to its directory.
+     */
+    public static final class ExternalPayloads extends InvisibleAction implements RunAction2 {
+
+        @Override public void onAttached(Run<?, ?> r) {
+            onLoad(r);
+        }
+
+        @Override public void onLoad(Run<?, ?> r) {
+            ParametersAction pa = r.getAction(ParametersAction.class);
+            if (pa != null) {
+                pa.getAllParameters().stream().
+                        filter(p -> p instanceof Base64FileParameterValue).
+                        map(p -> (Base64FileParameterValue) p).
+                        forEach(p -> {
+                            synchronized (p) {
+                                // a value shared with another build keeps pointing at the build which wrote its file
+                                if (p.owner == null) {
+                                    p.owner = r;
+                                }
+                            }
+                        });
+            }
+        }
+
+    }
+
+    @Extension
+    public static final class ExternalizingRunListener extends RunListener<Run<?, ?>> {
+
+        @Override public void onInitialize(Run<?, ?> r) {
+            ParametersAction pa = r.getAction(ParametersAction.class);
+            if (pa == null) {
+                return;
+            }
+            for (ParameterValue p : pa.getAllParameters()) {
+                if (p instanceof Base64FileParameterValue b) {
+                    synchronized (b) {
+                        if (b.export == null) {
+                            // passed by the build step, so fix the mode configured now
+                            b.export = Base64FileParameterDefinition.exportOf(r, b.getName());
+                            if (Base64FileParameterDefinition.definitionOf(r, b.getName()) instanceof AutoFileParameterDefinition) {
+                                b.handle = true;
+                            }
+                        }
+                    }
+                    try {
+                        // for a value created before digests were computed on creation, so that NAME_SHA256 is exported
+                        b.digest(r);
+                    } catch (IOException x) {
+                        LOGGER.log(Level.WARNING, "Could not compute the digest of parameter " + b.getName() + " of " + r, x);
+                    }
+                }
+            }
+            boolean externalized = false;
+            // values referred to by handle are always externalized, as that is what the handle points to
+            for (Base64FileParameterValue p : pa.getAllParameters().stream().
+                    filter(p -> p instanceof Base64FileParameterValue).
+                    map(p -> (Base64FileParameterValue) p).
+                    filter(p -> EXTERNALIZE || p.isHandle()).toList()) {
+                try {
+                    if (p.externalize(r)) {
+                        externalized = true;
+                    }
+                } catch (IOException x) {
+                    LOGGER.log(Level.WARNING, "Could not externalize parameter " + p.getName() + " of " + r + "; keeping it inline", x);
+                }
+            }
+            if (externalized && r.getAction(ExternalPayloads.class) == null) {
+                r.addAction(new ExternalPayloads());
+            }
+        }
+
     }
 
 }
@@ -0,0 +1,370 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.file_parameters;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.ParameterDefinition;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.RootAction;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.verb.GET;
+import org.kohsuke.stapler.verb.POST;
+
+/**
+ * Resumable uploads for {@link StashedFileParameterDefinition}, sent as independent chunks.
+ * <ol>
+ * <li>{@code POST fileParameterUploads/create?job=…&name=…&size=…&filename=…} returns an {@code id};
+ *     {@code name} must be a {@link StashedFileParameterDefinition} of the job, whose size limit applies.
+ * <li>{@code POST fileParameterUploads/ID/chunk?offset=…&sha256=…} with part of the content as the body,
+ *     in any order and possibly in parallel; a chunk whose checksum does not match is rejected and may simply be sent again.
+ * <li>{@code GET fileParameterUploads/ID/} lists the ranges received so far, so an interrupted client knows what to resend.
+ * <li>{@code POST fileParameterUploads/ID/complete?sha256=…} checks that everything has arrived and matches the checksum of the whole file.
+ * <li>{@code POST job/…/buildWithParameters?NAME_UPLOAD=ID} triggers the build, adopting the upload as the value of {@code NAME}.
+ * </ol>
+ * Each chunk is spooled and verified before being copied into a file under {@link StashedFileStorage#root},
+ * so a corrupted or abandoned chunk never touches received content, and completing an upload copies nothing further.
+ */
+@Extension
+public final class ChunkedUploads implements RootAction {
+
+    private static final Pattern ID = Pattern.compile("[0-9a-f-]{36}");
+
+    /** Upload IDs to lock on, since each request loads its own {@link Upload}. */
+    private static final Interner<String> LOCKS = Interners.newWeakInterner();
+
+    static @NonNull Path root() {
+        return StashedFileStorage.root().toPath().resolve("uploads");
+    }
+
+    @Override public String getIconFileName() {
+        return null;
+    }
+
+    @Override public String getDisplayName() {
+        return null;
+    }
+
+    @Override public String getUrlName() {
+        return "fileParameterUploads";
+    }
+
+    @POST
+    public HttpResponse doCreate(@QueryParameter String job, @QueryParameter String name, @QueryParameter long size, @QueryParameter String filename) throws IOException {
+        Job<?, ?> j = Jenkins.get().getItemByFullName(job, Job.class);
+        if (j == null) {
+            return HttpResponses.notFound();
+        }
+        j.checkPermission(Item.BUILD);
+        StashedFileParameterDefinition def = definition(j, name);
+        if (def == null) {
+            return HttpResponses.error(400, j.getFullName() + " has no stashed file parameter named " + name);
+        }
+        long max = FileParametersConfiguration.maxBytes(def.getMaxFileSize());
+        if (size < 0) {
+            return HttpResponses.error(400, "Size must not be negative");
+        }
+        if (max >= 0 && size > max) {
+            return HttpResponses.error(400, "Size must be at most " + max + " bytes");
+        }
+        try {
+            StashedFileStorage.reserve(size);
+        } catch (AbortException x) {
+            return HttpResponses.error(507, x.getMessage());
+        }
+        String id = UUID.randomUUID().toString();
+        Path dir = root().resolve(id);
+        try {
+            Files.createDirectories(dir);
+            Properties props = new Properties();
+            props.setProperty("job", j.getFullName());
+            props.setProperty("name", def.getName());
+            props.setProperty("user", Jenkins.getAuthentication2().getName());
+            props.setProperty("size", Long.toString(size));
+            if (Util.fixEmpty(filename) != null) {
+                props.setProperty("filename", filename);
+            }
+            try (Writer w = Files.newBufferedWriter(dir.resolve("upload.properties"), StandardCharsets.UTF_8)) {
+                props.store(w, null);
+            }
+            try (FileChannel ch = FileChannel.open(dir.resolve("data"), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+                if (size > 0) {
+                    ch.write(ByteBuffer.allocate(1), size - 1);
+                }
+            }
+        } catch (IOException x) {
+            FileUtils.deleteQuietly(dir.toFile());
+            StashedFileStorage.free(size);
+            throw x;
+        }
+        return HttpResponses.okJSON(new JSONObject().element("id", id));
+    }
+
+    private static @CheckForNull StashedFileParameterDefinition definition(@NonNull Job<?, ?> job, @CheckForNull String name) {
+        ParametersDefinitionProperty pdp = job.getProperty(ParametersDefinitionProperty.class);
+        ParameterDefinition d = pdp != null && name != null ? pdp.getParameterDefinition(name) : null;
+        return d instanceof StashedFileParameterDefinition ? (StashedFileParameterDefinition) d : null;
+    }
+
+    public @CheckForNull Upload getDynamic(String id) throws IOException {
+        if (!ID.matcher(id).matches()) {
+            return null;
+        }
+        Upload upload = Upload.load(id);
+        if (upload == null || !upload.user.equals(Jenkins.getAuthentication2().getName())) {
+            return null;
+        }
+        return upload;
+    }
+
+    /**
+     * Takes over a completed upload as the content of a parameter value.
+     * @throws IOException if there is no such completed upload for this parameter of the job and user
+     */
+    static @NonNull Upload claim(@NonNull String id, @NonNull Job<?, ?> job, @NonNull String name) throws IOException {
+        Upload upload = ID.matcher(id).matches() ? Upload.load(id) : null;
+        if (upload == null || !upload.job.equals(job.getFullName()) || !name.equals(upload.name) || !upload.user.equals(Jenkins.getAuthentication2().getName())) {
+            throw new IOException("No upload " + id + " for " + name + " of " + job.getFullName());
+        }
+        if (upload.sha256 == null) {
+            throw new IOException("Upload " + id + " is not complete");
+        }
+        // moved aside atomically, so that if several requests claim the same upload, only one gets it
+        Path claimed = root().resolve("claimed-" + UUID.randomUUID());
+        try {
+            Files.move(upload.dir, claimed, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException x) {
+            throw new IOException("Upload " + id + " has already been claimed", x);
+        }
+        upload.dir = claimed;
+        return upload;
+    }
+
+    public static final class Upload {
+
+        final String id;
+        final String job;
+        final @CheckForNull String name;
+        final String user;
+        final long size;
+        final @CheckForNull String filename;
+        @CheckForNull String sha256;
+        @CheckForNull String md5;
+        private @NonNull Path dir;
+
+        private Upload(String id, Properties props, @CheckForNull String sha256, @CheckForNull String md5) {
+            this.id = id;
+            job = props.getProperty("job");
+            name = props.getProperty("name");
+            user = props.getProperty("user");
+            size = Long.parseLong(props.getProperty("size"));
+            filename = props.getProperty("filename");
+            this.sha256 = sha256;
+            this.md5 = md5;
+            dir = root().resolve(id);
+        }
+
+        static @CheckForNull Upload load(String id) throws IOException {
+            Path dir = root().resolve(id);
+            Properties props = new Properties();
+            try (Reader r = Files.newBufferedReader(dir.resolve("upload.properties"), StandardCharsets.UTF_8)) {
+                props.load(r);
+            } catch (NoSuchFileException x) {
+                return null;
+            }
+            Path complete = dir.resolve("complete");
+            if (!Files.exists(complete)) {
+                return new Upload(id, props, null, null);
+            }
+            List<String> digests = Files.readAllLines(complete, StandardCharsets.US_ASCII);
+            return new Upload(id, props, digests.get(0), digests.size() > 1 ? digests.get(1) : null);
+        }
+
+        @NonNull Path dir() {
+            return dir;
+        }
+
+        /**
+         * Guards writes into {@link #data} and appends to the list of received chunks.
+         */
+        private @NonNull Object lock() {
+            return LOCKS.intern(id);
+        }
+
+        @NonNull Path data() {
+            return dir().resolve("data");
+        }
+
+        /**
+         * Deletes what is left of the upload once its content has been moved elsewhere.
+         */
+        void delete() throws IOException {
+            FileUtils.deleteDirectory(dir().toFile());
+        }
+
+        @GET
+        public HttpResponse doIndex() throws IOException {
+            JSONArray received = new JSONArray();
+            for (long[] range : received()) {
+                received.add(new JSONArray().element(range[0]).element(range[1]));
+            }
+            return HttpResponses.okJSON(new JSONObject().element("id", id).element("size", size).element("received", received).element("complete", sha256 != null));
+        }
+
+        @POST
+        public HttpResponse doChunk(StaplerRequest2 req, @QueryParameter long offset, @QueryParameter String sha256) throws IOException {
+            if (this.sha256 != null) {
+                return HttpResponses.error(409, "Upload is already complete");
+            }
+            if (offset < 0 || offset >= size && size > 0) {
+                return HttpResponses.error(400, "Offset must be between 0 and " + size);
+            }
+            Path spool = Files.createTempFile(dir(), "chunk", null);
+            try {
+                MessageDigest md = AbstractFileParameterValue.sha256();
+                long length;
+                try (InputStream in = new DigestInputStream(req.getInputStream(), md);
+                     OutputStream os = Files.newOutputStream(spool)) {
+                    // read at most one byte too many, enough to reject an oversized chunk without spooling all of it
+                    length = IOUtils.copyLarge(in, os, 0, size - offset + 1);
+                }
+                if (offset + length > size) {
+                    return HttpResponses.error(400, "Chunk extends beyond " + size + " bytes");
+                }
+                if (!Util.toHexString(md.digest()).equalsIgnoreCase(sha256)) {
+                    return HttpResponses.error(400, "Checksum mismatch; resend this chunk");
+                }
+                if (length > 0) {
+                    synchronized (lock()) {
+                        try (FileChannel in = FileChannel.open(spool, StandardOpenOption.READ);
+                             FileChannel out = FileChannel.open(data(), StandardOpenOption.WRITE)) {
+                            long copied = 0;
+                            while (copied < length) {
+                                copied += in.transferTo(copied, length - copied, out.position(offset + copied));
+                            }
+                        }
+                        try (OutputStream os = Files.newOutputStream(dir().resolve("chunks"), StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                            os.write((offset + " " + length + "\n").getBytes(StandardCharsets.US_ASCII));
+                        }
+                    }
+                }
+                return HttpResponses.okJSON(new JSONObject().element("offset", offset).element("length", length));
+            } finally {
+                Files.deleteIfExists(spool);
+            }
+        }
+
+        @POST
+        public HttpResponse doComplete(@QueryParameter String sha256) throws IOException {
+            if (Util.fixEmpty(sha256) == null) {
+                return HttpResponses.error(400, "The SHA-256 of the whole file is required");
+            }
+            if (this.sha256 == null) {
+                List<long[]> received = received();
+                if (size > 0 && (received.size() != 1 || received.get(0)[1] != size)) {
+                    return HttpResponses.error(409, "Upload is missing content");
+                }
+                AbstractFileParameterValue.Digests digests = new AbstractFileParameterValue.Digests();
+                try (InputStream in = digests.digesting(Files.newInputStream(data()))) {
+                    IOUtils.consume(in);
+                }
+                String actual = digests.sha256Hex();
+                if (!actual.equalsIgnoreCase(sha256)) {
+                    return HttpResponses.error(400, "Checksum mismatch; got " + actual);
+                }
+                String md5 = digests.md5Hex();
+                Files.write(dir().resolve("complete"), List.of(actual, md5), StandardCharsets.US_ASCII);
+                this.sha256 = actual;
+                this.md5 = md5;
+            }
+            return HttpResponses.okJSON(new JSONObject().element("id", id).element("size", size).element("sha256", this.sha256));
+        }
+
+        /**
+         * @return merged ranges of content received so far, as start (inclusive) and end (exclusive) offsets
+         */
+        private List<long[]> received() throws IOException {
+            List<long[]> chunks = new ArrayList<>();
+            Path file = dir().resolve("chunks");
+            if (Files.exists(file)) {
+                for (String line : Files.readAllLines(file, StandardCharsets.US_ASCII)) {
+                    String[] parts = line.split(" ");
+                    if (parts.length == 2) {
+                        long start = Long.parseLong(parts[0]);
+                        chunks.add(new long[] {start, start + Long.parseLong(parts[1])});
+                    }
+                }
+            }
+            chunks.sort((a, b) -> Long.compare(a[0], b[0]));
+            List<long[]> merged = new ArrayList<>();
+            for (long[] chunk : chunks) {
+                long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if (last != null && chunk[0] <= last[1]) {
+                    last[1] = Math.max(last[1], chunk[1]);
+                } else {
+                    merged.add(chunk);
+                }
+            }
+            return merged;
+        }
+
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.file_parameters;
+
+import hudson.FilePath;
+import hudson.remoting.Pipe;
+import hudson.remoting.VirtualChannel;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+
+/**
+ * Copies content to an agent gzip-compressed, unless a sample of it does not compress.
+ */
+final class CompressedTransfer {
+
+    /** Number of leading bytes used to decide whether compression is worthwhile. */
+    private static final int SAMPLE = 64 * 1024;
+
+    /** Compressed sample size, relative to the original, above which content is sent as is. */
+    private static final double MAX_RATIO = 0.9;
+
+    private CompressedTransfer() {}
+
+    /**
+     * Writes content to a (normally remote) file.
+     * @return the number of bytes sent compressed, or -1 if the content was sent as is
+     */
+    static long copy(InputStream src, FilePath target) throws IOException, InterruptedException {
+        BufferedInputStream in = new BufferedInputStream(src, SAMPLE);
+        in.mark(SAMPLE);
+        byte[] sample = new byte[SAMPLE];
+        int n = IOUtils.read(in, sample);
+        in.reset();
+        if (!compressible(sample, n)) {
+            target.copyFrom(in);
+            return -1;
+        }
+        Pipe pipe = Pipe.createLocalToRemote();
+        Future<Void> written = target.actAsync(new Gunzip(pipe));
+        CountingOutputStream sent = new CountingOutputStream(pipe.getOut());
+        try (OutputStream os = new FastGZIPOutputStream(sent)) {
+            IOUtils.copy(in, os);
+        }
+        try {
+            written.get();
+        } catch (ExecutionException x) {
+            throw new IOException(x.getCause());
+        }
+        return sent.getByteCount();
+    }
+
+    static boolean compressible(byte[] sample, int length) {
+        if (length <= 0) {
+            return false;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(sample, 0, length);
+            deflater.finish();
+            int limit = (int) (length * MAX_RATIO);
+            byte[] out = new byte[limit];
+            int compressed = 0;
+            while (!deflater.finished() && compressed < limit) {
+                compressed += deflater.deflate(out, compressed, limit - compressed);
+            }
+            return deflater.finished();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Favors throughput over ratio, since the point is to save time on a slow link, not space.
+     */
+    private static final class FastGZIPOutputStream extends GZIPOutputStream {
+
+        FastGZIPOutputStream(OutputStream out) throws IOException {
+            super(out, SAMPLE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+
+    }
+
+    private static final class Gunzip extends MasterToSlaveFileCallable<Void> {
+
+        private static final long serialVersionUID = 1;
+
+        private final Pipe pipe;
+
+        Gunzip(Pipe pipe) {
+            this.pipe = pipe;
+        }
+
+        @Override public Void invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+            try (InputStream is = new GZIPInputStream(pipe.getIn(), SAMPLE); OutputStream os = Files.newOutputStream(f.toPath())) {
+                IOUtils.copy(is, os);
+            }
+            return null;
+        }
+
+    }
+
+}
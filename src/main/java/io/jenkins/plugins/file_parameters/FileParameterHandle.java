@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.file_parameters;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.AbortException;
+import hudson.model.Run;
+import java.io.Serializable;
+
+/**
+ * A small reference to a file parameter stored in a build, such as one uploaded through {@code input}, or {@code params.NAME}.
+ * The content is either stashed, or for a {@link Base64FileParameterDefinition#isHandle} parameter, externalized into the build directory.
+ * It can be kept in Pipeline program state cheaply and passed to {@code withFileParameter(name: …, file: …)},
+ * or to a downstream build as {@code stashedFile(name: …, from: …)}.
+ * It remains valid as long as the stash does, which by default is until the build completes,
+ * or for externalized content, as long as the build is kept.
+ */
+public final class FileParameterHandle implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final @CheckForNull String stash;
+    private final @CheckForNull String external;
+    private final String run;
+    private final @CheckForNull String filename;
+    private final long size;
+    private final @CheckForNull String sha256;
+    private final @CheckForNull String md5;
+
+    FileParameterHandle(@NonNull String name, @NonNull String stash, @NonNull Run<?, ?> run, @CheckForNull String filename, long size, @CheckForNull String sha256, @CheckForNull String md5) {
+        this(name, stash, null, run, filename, size, sha256, md5);
+    }
+
+    /**
+     * @param external name of the file holding the Base64 payload in the build directory of {@code run}
+     */
+    static @NonNull FileParameterHandle external(@NonNull String name, @NonNull String external, @NonNull Run<?, ?> run, @CheckForNull String filename, long size, @CheckForNull String sha256, @CheckForNull String md5) {
+        return new FileParameterHandle(name, null, external, run, filename, size, sha256, md5);
+    }
+
+    private FileParameterHandle(@NonNull String name, @CheckForNull String stash, @CheckForNull String external, @NonNull Run<?, ?> run, @CheckForNull String filename, long size, @CheckForNull String sha256, @CheckForNull String md5) {
+        this.name = name;
+        this.stash = stash;
+        this.external = external;
+        this.run = run.getExternalizableId();
+        this.filename = filename;
+        this.size = size;
+        this.sha256 = sha256;
+        this.md5 = md5;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public @CheckForNull String getFilename() {
+        return filename;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public @CheckForNull String getSha256() {
+        return sha256;
+    }
+
+    /**
+     * @return null if the content is externalized rather than stashed
+     */
+    @CheckForNull String getStash() {
+        return stash;
+    }
+
+    @CheckForNull String getExternal() {
+        return external;
+    }
+
+    @CheckForNull String getMd5() {
+        return md5;
+    }
+
+    /**
+     * @return the build holding the stash
+     */
+    @NonNull Run<?, ?> run() throws AbortException {
+        Run<?, ?> r = Run.fromExternalizableId(run);
+        if (r == null) {
+            throw new AbortException("File parameter " + name + " refers to " + run + ", which no longer exists");
+        }
+        return r;
+    }
+
+    /**
+     * @return a value reading from the stash or externalized payload in {@link #run}
+     */
+    @NonNull AbstractFileParameterValue toValue() {
+        return external != null ? new Base64FileParameterValue(this) : new StashedFileParameterValue(this);
+    }
+
+    @Override public String toString() {
+        return "FileParameterHandle[" + name + (filename != null ? " (" + filename + ")" : "") + ", " + size + " bytes, in " + run + "]";
+    }
+
+}
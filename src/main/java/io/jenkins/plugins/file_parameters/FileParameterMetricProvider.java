@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.file_parameters;
+
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import hudson.Extension;
+import hudson.ExtensionList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import jenkins.metrics.api.MetricProvider;
+
+/**
+ * Publishes {@link FileParameterMetrics} through the Metrics plugin, under {@code jenkins.file-parameters}.
+ * The Metrics plugin asks for the set once, so there are names for every type of parameter definition from the start,
+ * whether or not it has been used yet.
+ */
+@Extension(optional = true)
+public final class FileParameterMetricProvider extends MetricProvider {
+
+    @Override public MetricSet getMetricSet() {
+        return () -> {
+            FileParameterMetrics m = FileParameterMetrics.INSTANCE;
+            Map<String, Metric> metrics = new HashMap<>();
+            for (AbstractFileParameterDefinition.AbstractFileParameterDefinitionDescriptor d
+                    : ExtensionList.lookup(AbstractFileParameterDefinition.AbstractFileParameterDefinitionDescriptor.class)) {
+                String type = d.clazz.getSimpleName();
+                stat(metrics, "upload." + type + ".bytes", () -> FileParameterMetrics.snapshot(m.uploadBytes, type));
+                stat(metrics, "upload." + type + ".millis", () -> FileParameterMetrics.snapshot(m.uploadMillis, type));
+            }
+            stat(metrics, "stash.millis", m::getStashMillis);
+            stat(metrics, "unstash.millis", m::getUnstashMillis);
+            stat(metrics, "transfer.bytes", m::getTransferBytes);
+            stat(metrics, "transfer.millis", m::getTransferMillis);
+            metrics.put(name("cleanup.successes"), (Gauge<Long>) m::getCleanupSuccesses);
+            metrics.put(name("cleanup.failures"), (Gauge<Long>) m::getCleanupFailures);
+            metrics.put(name("swept.entries"), (Gauge<Long>) m::getSweptEntries);
+            metrics.put(name("swept.bytes"), (Gauge<Long>) m::getSweptBytes);
+            return metrics;
+        };
+    }
+
+    /**
+     * Registers gauges for the parts of one statistic.
+     * They share a snapshot taken at most once a second, so a reporter reading all of them sorts the samples once.
+     */
+    private static void stat(Map<String, Metric> metrics, String prefix, Supplier<FileParameterMetrics.Snapshot> snapshot) {
+        CachedGauge<FileParameterMetrics.Snapshot> cached = new CachedGauge<>(1, TimeUnit.SECONDS) {
+            @Override protected FileParameterMetrics.Snapshot loadValue() {
+                return snapshot.get();
+            }
+        };
+        part(metrics, prefix + ".count", cached, FileParameterMetrics.Snapshot::getCount);
+        part(metrics, prefix + ".total", cached, FileParameterMetrics.Snapshot::getTotal);
+        part(metrics, prefix + ".max", cached, FileParameterMetrics.Snapshot::getMax);
+        part(metrics, prefix + ".mean", cached, FileParameterMetrics.Snapshot::getMean);
+        part(metrics, prefix + ".p50", cached, FileParameterMetrics.Snapshot::getP50);
+        part(metrics, prefix + ".p95", cached, FileParameterMetrics.Snapshot::getP95);
+        part(metrics, prefix + ".p99", cached, FileParameterMetrics.Snapshot::getP99);
+    }
+
+    private static <T> void part(Map<String, Metric> metrics, String suffix, Gauge<FileParameterMetrics.Snapshot> snapshot, Function<FileParameterMetrics.Snapshot, T> part) {
+        metrics.put(name(suffix), (Gauge<T>) () -> part.apply(snapshot.getValue()));
+    }
+
+    private static String name(String suffix) {
+        return MetricRegistry.name("jenkins", "file-parameters", suffix);
+    }
+
+}
@@ -0,0 +1,277 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.file_parameters;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import static hudson.init.InitMilestone.PLUGINS_STARTED;
+
+/**
+ * Counts the time and I/O spent handling file parameters.
+ * Exposed over JMX as {@value #OBJECT_NAME}, and through the Metrics plugin when that is installed.
+ * Durations are in milliseconds.
+ * Percentiles are taken over the most recent {@value Stat#WINDOW} samples of each quantity,
+ * so that they are available over JMX whether or not the Metrics plugin is installed.
+ */
+public final class FileParameterMetrics implements FileParameterMetricsMXBean {
+
+    private static final Logger LOGGER = Logger.getLogger(FileParameterMetrics.class.getName());
+
+    static final String OBJECT_NAME = "io.jenkins.plugins.file_parameters:type=FileParameterMetrics";
+
+    static final FileParameterMetrics INSTANCE = new FileParameterMetrics();
+
+    final ConcurrentMap<String, Stat> uploadBytes = new ConcurrentHashMap<>();
+    final ConcurrentMap<String, Stat> uploadMillis = new ConcurrentHashMap<>();
+    final Stat stashMillis = new Stat();
+    final Stat unstashMillis = new Stat();
+    final Stat transferBytes = new Stat();
+    final Stat transferMillis = new Stat();
+    final LongAdder cleanupSuccesses = new LongAdder();
+    final LongAdder cleanupFailures = new LongAdder();
+    final LongAdder sweptEntries = new LongAdder();
+    final LongAdder sweptBytes = new LongAdder();
+
+    private FileParameterMetrics() {}
+
+    /**
+     * Records a value created from an upload.
+     * @param type the simple name of the parameter definition class
+     * @param start as returned by {@link System#nanoTime} when the upload started to be read
+     */
+    static void upload(@NonNull String type, long bytes, long start) {
+        INSTANCE.uploadBytes.computeIfAbsent(type, k -> new Stat()).add(bytes);
+        INSTANCE.uploadMillis.computeIfAbsent(type, k -> new Stat()).add(millisSince(start));
+    }
+
+    static void stash(long start) {
+        INSTANCE.stashMillis.add(millisSince(start));
+    }
+
+    static void unstash(long start) {
+        INSTANCE.unstashMillis.add(millisSince(start));
+    }
+
+    static void transfer(long bytes, long start) {
+        INSTANCE.transferBytes.add(bytes);
+        INSTANCE.transferMillis.add(millisSince(start));
+    }
+
+    static void cleanup(boolean success) {
+        (success ? INSTANCE.cleanupSuccesses : INSTANCE.cleanupFailures).increment();
+    }
+
+    static void swept(long bytes) {
+        INSTANCE.sweptEntries.increment();
+        INSTANCE.sweptBytes.add(bytes);
+    }
+
+    private static long millisSince(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    @Override public Map<String, Snapshot> getUploadBytes() {
+        return snapshots(uploadBytes);
+    }
+
+    @Override public Map<String, Snapshot> getUploadMillis() {
+        return snapshots(uploadMillis);
+    }
+
+    @Override public Snapshot getStashMillis() {
+        return stashMillis.snapshot();
+    }
+
+    @Override public Snapshot getUnstashMillis() {
+        return unstashMillis.snapshot();
+    }
+
+    @Override public Snapshot getTransferBytes() {
+        return transferBytes.snapshot();
+    }
+
+    @Override public Snapshot getTransferMillis() {
+        return transferMillis.snapshot();
+    }
+
+    @Override public long getCleanupSuccesses() {
+        return cleanupSuccesses.sum();
+    }
+
+    @Override public long getCleanupFailures() {
+        return cleanupFailures.sum();
+    }
+
+    @Override public long getSweptEntries() {
+        return sweptEntries.sum();
+    }
+
+    @Override public long getSweptBytes() {
+        return sweptBytes.sum();
+    }
+
+    /**
+     * @return the snapshot of one type of parameter definition, empty if it has not been used yet
+     */
+    static @NonNull Snapshot snapshot(Map<String, Stat> stats, String type) {
+        Stat stat = stats.get(type);
+        return stat != null ? stat.snapshot() : new Snapshot(0, 0, 0, 0, 0, 0);
+    }
+
+    private static Map<String, Snapshot> snapshots(Map<String, Stat> stats) {
+        Map<String, Snapshot> snapshots = new TreeMap<>();
+        stats.forEach((k, v) -> snapshots.put(k, v.snapshot()));
+        return snapshots;
+    }
+
+    @Initializer(after = PLUGINS_STARTED)
+    public static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (JMException x) {
+            LOGGER.log(Level.WARNING, "Could not register " + OBJECT_NAME, x);
+        }
+    }
+
+    @Terminator
+    public static void unregister() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (JMException x) {
+            LOGGER.log(Level.FINE, "Could not unregister " + OBJECT_NAME, x);
+        }
+    }
+
+    /**
+     * A running count, total and maximum of some quantity, plus a sliding window of recent samples.
+     */
+    static final class Stat {
+
+        static final int WINDOW = 1024;
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final long[] recent = new long[WINDOW];
+        private int next;
+        private int filled;
+
+        void add(long value) {
+            count.increment();
+            total.add(value);
+            max.accumulate(value);
+            synchronized (recent) {
+                recent[next] = value;
+                next = (next + 1) % WINDOW;
+                filled = Math.min(filled + 1, WINDOW);
+            }
+        }
+
+        Snapshot snapshot() {
+            long[] sorted;
+            synchronized (recent) {
+                sorted = Arrays.copyOf(recent, filled);
+            }
+            Arrays.sort(sorted);
+            return new Snapshot(count.sum(), total.sum(), max.get(), percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99));
+        }
+
+        /**
+         * Nearest-rank percentile.
+         */
+        static long percentile(long[] sorted, int p) {
+            return sorted.length == 0 ? 0 : sorted[(int) Math.ceil(p / 100.0 * sorted.length) - 1];
+        }
+
+    }
+
+    public static final class Snapshot {
+
+        private final long count;
+        private final long total;
+        private final long max;
+        private final long p50;
+        private final long p95;
+        private final long p99;
+
+        @ConstructorProperties({"count", "total", "max", "p50", "p95", "p99"})
+        public Snapshot(long count, long total, long max, long p50, long p95, long p99) {
+            this.count = count;
+            this.total = total;
+            this.max = max;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /** Median of recent samples. */
+        public long getP50() {
+            return p50;
+        }
+
+        /** 95th percentile of recent samples. */
+        public long getP95() {
+            return p95;
+        }
+
+        /** 99th percentile of recent samples. */
+        public long getP99() {
+            return p99;
+        }
+
+    }
+
+}
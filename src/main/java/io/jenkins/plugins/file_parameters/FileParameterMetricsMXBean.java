@@ -0,0 +1,64 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.file_parameters;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link FileParameterMetrics}.
+ */
+public interface FileParameterMetricsMXBean {
+
+    /** Sizes of uploaded files, by type of parameter definition. */
+    Map<String, FileParameterMetrics.Snapshot> getUploadBytes();
+
+    /** Time taken to receive and store uploaded files, by type of parameter definition. */
+    Map<String, FileParameterMetrics.Snapshot> getUploadMillis();
+
+    /** Time taken to stash a {@link StashedFileParameterValue} into its build. */
+    FileParameterMetrics.Snapshot getStashMillis();
+
+    /** Time taken to unstash a {@link StashedFileParameterValue} for {@link FileParameterWrapper}. */
+    FileParameterMetrics.Snapshot getUnstashMillis();
+
+    /** Sizes of files copied to workspaces by {@link FileParameterWrapper}. */
+    FileParameterMetrics.Snapshot getTransferBytes();
+
+    /** Time taken by {@link FileParameterWrapper} to copy files to workspaces. */
+    FileParameterMetrics.Snapshot getTransferMillis();
+
+    /** Temporary files and pending uploads deleted. */
+    long getCleanupSuccesses();
+
+    /** Temporary files and pending uploads which could not be deleted. */
+    long getCleanupFailures();
+
+    /** Orphaned entries deleted by {@link StashedFileSweeper}. */
+    long getSweptEntries();
+
+    /** Bytes reclaimed by {@link StashedFileSweeper}. */
+    long getSweptBytes();
+
+}
@@ -24,20 +24,29 @@
 
 package io.jenkins.plugins.file_parameters;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.AbortException;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.AbstractProject;
 import hudson.model.ParameterValue;
 import hudson.model.ParametersAction;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
 import hudson.slaves.WorkspaceList;
 import hudson.tasks.BuildWrapperDescriptor;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import jenkins.MasterToSlaveFileCallable;
 import jenkins.tasks.SimpleBuildWrapper;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
@@ -52,6 +61,10 @@ public final class FileParameterWrapper extends SimpleBuildWrapper {
 
     private boolean allowNoFile;
 
+    private boolean compress;
+
+    private FileParameterHandle file;
+
     @DataBoundConstructor public FileParameterWrapper(String name) {
         this.name = name;
     }
@@ -65,7 +78,72 @@ public final class FileParameterWrapper extends SimpleBuildWrapper {
         this.allowNoFile = allowNoFile;
     }
 
+    public boolean isCompress() {
+        return compress;
+    }
+
+    @DataBoundSetter
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    public FileParameterHandle getFile() {
+        return file;
+    }
+
+    /**
+     * Uses a file returned by {@code input} rather than a build parameter.
+     */
+    @DataBoundSetter
+    public void setFile(FileParameterHandle file) {
+        this.file = file;
+    }
+
     @Override public void setUp(Context context, Run<?, ?> build, FilePath workspace, Launcher launcher, TaskListener listener, EnvVars initialEnvironment) throws IOException, InterruptedException {
+        AbstractFileParameterValue value;
+        Run<?, ?> source;
+        if (file != null) {
+            value = file.toValue();
+            source = file.run();
+        } else {
+            value = parameter(build, listener);
+            if (value == null) {
+                return;
+            }
+            source = build;
+        }
+        FilePath tempDir = WorkspaceList.tempDir(workspace);
+        if (tempDir == null) {
+            throw new AbortException("Missing workspace or could not make temp dir");
+        }
+        tempDir.mkdirs();
+        FilePath cache = AgentFileCache.of(workspace);
+        String sha256 = value.digest(source);
+        FilePath f = cache != null && sha256 != null ? AgentFileCache.fetch(cache, sha256, tempDir, name.length() >= 3 ? name : "fileparam") : null;
+        if (f != null) {
+            listener.getLogger().println("Using cached copy of " + name);
+        } else {
+            long start = System.nanoTime();
+            f = value.createTempFile(source, tempDir, initialEnvironment, launcher, listener, compress);
+            FileParameterMetrics.transfer(value.getSize(), start);
+        }
+        // Either a unique file in tempDir, or a file in a unique directory of its own, which then goes with it.
+        FilePath owned = f.getParent() != null && !f.getParent().getRemote().equals(tempDir.getRemote()) ? f.getParent() : f;
+        if (sha256 != null) {
+            String actual = f.act(new Sha256());
+            if (!actual.equals(sha256)) {
+                owned.deleteRecursive();
+                throw new AbortException("Content of " + name + " was corrupted in transfer: expected SHA-256 " + sha256 + " but got " + actual);
+            }
+            if (cache != null) {
+                AgentFileCache.put(cache, sha256, f);
+            }
+        }
+        context.env(name, f.getRemote());
+        context.setDisposer(new Delete(owned.getRemote()));
+    }
+
+    private @CheckForNull AbstractFileParameterValue parameter(Run<?, ?> build, TaskListener listener) throws AbortException {
         ParametersAction pa = build.getAction(ParametersAction.class);
         if (pa == null) {
             throw new AbortException("No parameters");
@@ -79,16 +157,26 @@ public final class FileParameterWrapper extends SimpleBuildWrapper {
         }
         if (pv == null && allowNoFile) {
             listener.getLogger().println("Skip file parameter as there is no parameter with name: '" + name + "'");
-            return;
+            return null;
         }
-        FilePath tempDir = WorkspaceList.tempDir(workspace);
-        if (tempDir == null) {
-            throw new AbortException("Missing workspace or could not make temp dir");
+        return (AbstractFileParameterValue) pv;
+    }
+
+    /**
+     * Computes the SHA-256 of a file where it is, so only the digest comes back.
+     */
+    private static final class Sha256 extends MasterToSlaveFileCallable<String> {
+
+        private static final long serialVersionUID = 1;
+
+        @Override public String invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+            MessageDigest md = AbstractFileParameterValue.sha256();
+            try (InputStream in = new DigestInputStream(Files.newInputStream(f.toPath()), md)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return Util.toHexString(md.digest());
         }
-        tempDir.mkdirs();
-        FilePath f = ((AbstractFileParameterValue) pv).createTempFile(build, tempDir, initialEnvironment, launcher, listener);
-        context.env(name, f.getRemote());
-        context.setDisposer(new Delete(f.getRemote()));
+
     }
 
     private static class Delete extends Disposer {
@@ -101,7 +189,13 @@ public final class FileParameterWrapper extends SimpleBuildWrapper {
         }
 
         @Override public void tearDown(Run<?, ?> build, FilePath workspace, Launcher launcher, TaskListener listener) throws IOException, InterruptedException {
-            workspace.child(file).delete();
+            try {
+                workspace.child(file).deleteRecursive();
+            } catch (IOException x) {
+                FileParameterMetrics.cleanup(false);
+                throw x;
+            }
+            FileParameterMetrics.cleanup(true);
         }
 
     }
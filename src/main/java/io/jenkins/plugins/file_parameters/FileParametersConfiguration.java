@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.file_parameters;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.Functions;
+import jenkins.model.GlobalConfiguration;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Global settings for file parameters.
+ */
+@Extension
+@Symbol("fileParameters")
+public final class FileParametersConfiguration extends GlobalConfiguration {
+
+    private long maxFileSize;
+
+    private long pendingQuota;
+
+    public FileParametersConfiguration() {
+        load();
+    }
+
+    public static FileParametersConfiguration get() {
+        return ExtensionList.lookupSingleton(FileParametersConfiguration.class);
+    }
+
+    /**
+     * @return the maximum size in MiB of any uploaded file parameter, or 0 for no limit
+     */
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    @DataBoundSetter
+    public void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = Math.max(0, maxFileSize);
+        save();
+    }
+
+    /**
+     * @return the maximum size in MiB of content uploaded for {@link StashedFileParameterValue}s not yet stashed into their builds, or 0 for no limit
+     */
+    public long getPendingQuota() {
+        return pendingQuota;
+    }
+
+    @DataBoundSetter
+    public void setPendingQuota(long pendingQuota) {
+        this.pendingQuota = Math.max(0, pendingQuota);
+        save();
+    }
+
+    /**
+     * @return a human-readable size of content currently pending
+     */
+    public String getPendingUsage() {
+        return Functions.humanReadableByteSize(StashedFileStorage.usage());
+    }
+
+    /**
+     * Combines the global limit with one configured on a parameter definition.
+     * @param maxFileSize limit in MiB of the definition, or 0 if none
+     * @return the effective limit in bytes, or -1 if none
+     */
+    static long maxBytes(long maxFileSize) {
+        long global = get().getMaxFileSize();
+        long mib = global > 0 && maxFileSize > 0 ? Math.min(global, maxFileSize) : Math.max(global, maxFileSize);
+        return mib > 0 ? mib * 1024 * 1024 : -1;
+    }
+
+}
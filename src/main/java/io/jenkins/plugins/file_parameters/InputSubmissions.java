@@ -0,0 +1,47 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.file_parameters;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.model.Run;
+import org.jenkinsci.plugins.workflow.support.steps.input.InputAction;
+import org.kohsuke.stapler.StaplerRequest2;
+
+/**
+ * Recognizes submissions to the {@code input} step.
+ * {@code pipeline-input-step} is an optional dependency, so this class must only be loaded once it is known to be installed.
+ */
+final class InputSubmissions {
+
+    /**
+     * @return the build whose {@code input} step the request submits parameters to, or null if it is not such a submission
+     */
+    static @CheckForNull Run<?, ?> build(StaplerRequest2 req) {
+        return req.findAncestorObject(InputAction.class) != null ? req.findAncestorObject(Run.class) : null;
+    }
+
+    private InputSubmissions() {}
+
+}
@@ -24,11 +24,17 @@
 
 package io.jenkins.plugins.file_parameters;
 
+import hudson.AbortException;
 import hudson.Extension;
+import hudson.model.Failure;
+import hudson.model.Job;
+import hudson.model.ParameterValue;
 import java.io.IOException;
 import java.io.InputStream;
+import org.apache.commons.fileupload2.core.FileItem;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.StaplerRequest2;
 
 public final class StashedFileParameterDefinition extends AbstractFileParameterDefinition {
 
@@ -44,7 +50,40 @@ public final class StashedFileParameterDefinition extends AbstractFileParameterD
         return new StashedFileParameterValue(name, src);
     }
 
-    // TODO equals/hashCode
+    @Override protected AbstractFileParameterValue createValue(String name, FileItem src) throws IOException {
+        return new StashedFileParameterValue(name, src);
+    }
+
+    /**
+     * Also accepts {@code NAME_UPLOAD=ID} referring to a completed {@link ChunkedUploads.Upload}.
+     */
+    @Override public ParameterValue createValue(StaplerRequest2 req) {
+        String id = req.getParameter(getName() + "_UPLOAD");
+        if (id == null) {
+            return super.createValue(req);
+        }
+        Job<?, ?> job = req.findAncestorObject(Job.class);
+        if (job == null) {
+            throw new Failure("Uploads may only be referenced when building a job");
+        }
+        long start = System.nanoTime();
+        try {
+            ChunkedUploads.Upload upload = ChunkedUploads.claim(id, job, getName());
+            checkSize(upload.size);
+            StashedFileParameterValue p = new StashedFileParameterValue(getName(), StashedFileStorage.adopt(getName(), upload.data(), upload.size, upload.sha256, upload.md5));
+            upload.delete();
+            recordUpload(p, start);
+            if (upload.filename != null) {
+                p.setFilename(upload.filename);
+            }
+            p.setDescription(getDescription());
+            return p;
+        } catch (AbortException x) {
+            throw new Failure(x.getMessage());
+        } catch (IOException x) {
+            throw new RuntimeException(x);
+        }
+    }
 
     @Symbol("stashedFile")
     @Extension public static final class DescriptorImpl extends AbstractFileParameterDefinitionDescriptor {
@@ -24,29 +24,62 @@
 
 package io.jenkins.plugins.file_parameters;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
+import hudson.Functions;
 import hudson.Launcher;
+import hudson.Util;
+import hudson.model.Action;
+import hudson.model.Computer;
+import hudson.model.Executor;
+import hudson.model.InvisibleAction;
+import hudson.model.ParameterValue;
 import hudson.model.ParametersAction;
 import hudson.model.Queue;
+import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.queue.FoldableAction;
 import hudson.model.queue.QueueListener;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import jenkins.model.Jenkins;
+import java.util.zip.GZIPInputStream;
+import jenkins.model.CauseOfInterruption;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.fileupload2.core.FileItem;
-import org.apache.commons.io.FileUtils;
-import org.jenkinsci.plugins.workflow.flow.FlowExecutionOwner;
+import org.jenkinsci.Symbol;
 import org.jenkinsci.plugins.workflow.flow.StashManager;
+import org.jenkinsci.plugins.workflow.flow.StepListener;
+import org.jenkinsci.plugins.workflow.steps.FlowInterruptedException;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
+@Symbol("stashedFile")
 public final class StashedFileParameterValue extends AbstractFileParameterValue {
 
     private static final Logger LOGGER = Logger.getLogger(StashedFileParameterValue.class.getName());
@@ -55,47 +88,365 @@ public final class StashedFileParameterValue extends AbstractFileParameterValue
 
     private String tmpFile;
 
-    @DataBoundConstructor public StashedFileParameterValue(String name, FileItem file) throws IOException {
-        this(name, file.getInputStream());
+    /** Name of the stash, if not the same as the parameter; used when several values of one parameter go into the same build. */
+    private @CheckForNull String stash;
+
+    /** The build into which this value is stashed. */
+    private @CheckForNull String stashedInto;
+
+    /** Name of the file within the stash, if not the same as the parameter; set when {@link #tmpFile} is itself a stash of another build. */
+    private @CheckForNull String entry;
+
+    private transient CompletableFuture<?> stashing;
+
+    @DataBoundConstructor public StashedFileParameterValue(String name) {
+        super(name);
+    }
+
+    public StashedFileParameterValue(String name, FileItem file) throws IOException {
+        this(name);
+        setFile(file);
+    }
+
+    @DataBoundSetter public void setFile(FileItem file) throws IOException {
+        setStored(StashedFileStorage.store(name, file));
         setFilename(file.getName());
-        file.delete();
+    }
+
+    /**
+     * Refers to a file stashed in another build, such as a parameter of the upstream build ({@code params.NAME}) or the result of {@code input}.
+     * While the value is queued, the stash is held by a hard link where possible rather than copied,
+     * unless the other build is still running and so might stash something else under the same name.
+     * It is copied into the stashes of this build either way, since {@link StashManager} rewrites those in place.
+     */
+    @DataBoundSetter public void setFrom(FileParameterHandle from) throws IOException, InterruptedException {
+        Run<?, ?> run = from.run();
+        ParametersAction pa = run.getAction(ParametersAction.class);
+        if (pa != null && pa.getParameter(from.getName()) instanceof StashedFileParameterValue p && p.stashName().equals(from.getStash())) {
+            p.awaitStashed(run);
+        }
+        File tarball = from.getStash() != null ? stashTarball(run, from.getStash()) : null;
+        if (tarball != null && tarball.isFile()) {
+            tmpFile = StashedFileStorage.link(tarball, run.isBuilding()).getAbsolutePath();
+            entry = from.getName();
+            if (from.getSha256() != null) {
+                setDigest(from.getSize(), from.getSha256(), from.getMd5());
+            }
+        } else {
+            try (InputStream in = from.toValue().open(run)) {
+                setStored(StashedFileStorage.store(name, in));
+            }
+        }
+        if (from.getFilename() != null) {
+            setFilename(from.getFilename());
+        }
     }
 
     StashedFileParameterValue(String name, InputStream src) throws IOException {
         super(name);
-        File dir = new File(Jenkins.get().getRootDir(), "stashedFileParameterValueFiles");
-        Files.createDirectories(dir.toPath());
-        File tmpDir = Files.createTempDirectory(dir.toPath(), null).toFile();
-        File tmp = new File(tmpDir, name);
-        FileUtils.copyInputStreamToFile(src, tmp);
-        tmpFile = tmp.getAbsolutePath();
-    }
-
-    @Override public void buildEnvironment(Run<?, ?> build, EnvVars env) {
-        super.buildEnvironment(build, env);
-        File tmp = tmpFile != null ? new File(tmpFile) : null;
-        if (tmp != null && tmp.isFile()) {
-            try {
-                FlowExecutionOwner feo = build instanceof FlowExecutionOwner.Executable ? ((FlowExecutionOwner.Executable) build).asFlowExecutionOwner() : null;
-                TaskListener listener = feo != null ? feo.getListener() : TaskListener.NULL;
-                StashManager.stash(build, name, new FilePath(tmp.getParentFile()),
-                                    new Launcher.LocalLauncher(listener), env, listener, tmp.getName(), null, false,
-                                    false );
-            } catch (IOException | InterruptedException x) {
-                throw new RuntimeException( x );
+        setStored(StashedFileStorage.store(name, src));
+    }
+
+    StashedFileParameterValue(String name, StashedFileStorage.Stored stored) {
+        super(name);
+        setStored(stored);
+    }
+
+    StashedFileParameterValue(FileParameterHandle handle) {
+        super(handle.getName());
+        stash = handle.getStash();
+        if (handle.getFilename() != null) {
+            setFilename(handle.getFilename());
+        }
+        if (handle.getSha256() != null) {
+            setDigest(handle.getSize(), handle.getSha256(), handle.getMd5());
+        }
+    }
+
+    private void setStored(StashedFileStorage.Stored stored) {
+        tmpFile = stored.file().getAbsolutePath();
+        setDigest(stored.size(), stored.sha256(), stored.md5());
+    }
+
+    /**
+     * @return the private directory holding content not yet stashed, if any
+     */
+    synchronized @CheckForNull File pendingDir() {
+        return tmpFile != null ? new File(tmpFile).getParentFile() : null;
+    }
+
+    private String stashName() {
+        return stash != null ? stash : name;
+    }
+
+    private String entry() {
+        return entry != null ? entry : name;
+    }
+
+    /**
+     * Stashes this value into a build which is already running, under a name of its own,
+     * so that {@link #getValue} can refer to it with a {@link FileParameterHandle}.
+     */
+    void stashInto(Run<?, ?> build) throws IOException, InterruptedException {
+        synchronized (this) {
+            stash = name + "-" + UUID.randomUUID();
+        }
+        awaitStashed(build);
+    }
+
+    /**
+     * @return a {@link FileParameterHandle} once this value is being stashed into a build, else null
+     */
+    @Override public Object getValue() {
+        Run<?, ?> build = stashedInto != null ? Run.fromExternalizableId(stashedInto) : null;
+        if (build == null) {
+            return null;
+        }
+        return new FileParameterHandle(entry(), stashName(), build, getFilename(), getSize(), getSha256(), getMd5());
+    }
+
+    /**
+     * Starts moving {@link #tmpFile} into a stash of the build, unless that has already been started or done.
+     * @return a future which completes once the stash exists
+     */
+    synchronized Future<?> startStashing(Run<?, ?> build) {
+        stashedInto = build.getExternalizableId();
+        if (stashing == null) {
+            File tmp = tmpFile != null ? new File(tmpFile) : null;
+            if (tmp != null && tmp.isFile()) {
+                stashing = CompletableFuture.runAsync(() -> stash(build, tmp), Computer.threadPoolForRemoting);
+            } else {
+                stashing = CompletableFuture.completedFuture(null);
+            }
+        }
+        return stashing;
+    }
+
+    private void stash(Run<?, ?> build, File tmp) {
+        long start = System.nanoTime();
+        try {
+            File dir = tmp.getParentFile();
+            if (entry != null) {
+                File tarball = stashTarball(build, stashName());
+                if (tarball != null) {
+                    Path dest = tarball.toPath();
+                    Files.createDirectories(dest.getParent());
+                    // not a link: a later stash of the same name in this build would overwrite every file sharing it
+                    Files.copy(tmp.toPath(), dest, StandardCopyOption.REPLACE_EXISTING);
+                    FileParameterMetrics.stash(start);
+                    discard();
+                    return;
+                }
+                // The artifact manager keeps stashes elsewhere, so unpack the entry and stash it normally.
+                dir = Files.createTempDirectory(dir.toPath(), "unpacked").toFile();
+                try (InputStream in = openEntry(tmp, entry)) {
+                    Files.copy(in, new File(dir, entry).toPath());
+                }
             }
+            StashManager.stash(build, stashName(), new FilePath(dir),
+                                new Launcher.LocalLauncher(TaskListener.NULL), new EnvVars(EnvVars.masterEnvVars), TaskListener.NULL, entry(), null, false,
+                                false );
+            FileParameterMetrics.stash(start);
+            discard();
+        } catch (IOException | InterruptedException x) {
+            LOGGER.log(Level.WARNING, "Failed to stash parameter " + name + " of " + build, x);
+            throw new CompletionException(x);
+        }
+    }
+
+    /**
+     * Waits until the content of this parameter is available as a stash of the build.
+     */
+    void awaitStashed(Run<?, ?> build) throws IOException, InterruptedException {
+        awaitStashed(build, TaskListener.NULL);
+    }
+
+    /**
+     * Waits until the content of this parameter is available as a stash of the build,
+     * reporting a failure to stash in the background to the listener of the consumer.
+     */
+    void awaitStashed(Run<?, ?> build, TaskListener listener) throws IOException, InterruptedException {
+        try {
+            startStashing(build).get();
+        } catch (ExecutionException x) {
+            Functions.printStackTrace(x.getCause(), listener.error("Failed to stash parameter " + name));
+            throw new IOException("Failed to stash parameter " + name, x.getCause());
+        }
+    }
+
+    @Override synchronized void discard() throws IOException {
+        if (tmpFile != null) {
             try {
-                FileUtils.deleteDirectory(tmp.getParentFile());
-                tmpFile = null;
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+                StashedFileStorage.release(new File(tmpFile), getSha256());
+            } catch (IOException x) {
+                FileParameterMetrics.cleanup(false);
+                throw x;
             }
+            FileParameterMetrics.cleanup(true);
+            tmpFile = null;
         }
     }
 
+    /**
+     * Reads the single entry straight out of the stash, rather than unstashing to a temporary directory first.
+     * The stash is a gzipped tarball, so it cannot be sent with {@code transferTo}, but it is read just once, sequentially.
+     */
+    @Override protected InputStream open(@CheckForNull Run<?, ?> build) throws IOException, InterruptedException {
+        if (build == null) {
+            throw new IOException("Cannot operate outside of a build context");
+        }
+        awaitStashed(build);
+        File tarball = stashTarball(build, stashName());
+        if (tarball == null || !tarball.isFile()) {
+            return super.open(build);
+        }
+        return openEntry(tarball, entry());
+    }
+
+    /**
+     * Locates the tarball in which {@link StashManager} keeps a stash of a build.
+     * workflow-api offers no way to read a stash other than unstashing it into a workspace,
+     * so this relies on its default storage as {@code stashes/NAME.tar.gz} in the build directory;
+     * {@code StashedFileStorageTest.stashLayout} fails if that changes.
+     * @return null if the artifact manager of the build keeps stashes elsewhere
+     */
+    static @CheckForNull File stashTarball(@NonNull Run<?, ?> build, @NonNull String stash) {
+        if (build.pickArtifactManager() instanceof StashManager.StashAwareArtifactManager) {
+            return null;
+        }
+        return new File(build.getRootDir(), "stashes/" + stash + ".tar.gz");
+    }
+
+    private static InputStream openEntry(File tarball, String entry) throws IOException {
+        TarArchiveInputStream tar = new TarArchiveInputStream(new GZIPInputStream(Files.newInputStream(tarball.toPath())));
+        try {
+            ArchiveEntry e;
+            while ((e = tar.getNextEntry()) != null) {
+                if (e.getName().equals(entry) && !e.isDirectory()) {
+                    return tar;
+                }
+            }
+        } catch (IOException | RuntimeException x) {
+            tar.close();
+            throw x;
+        }
+        tar.close();
+        throw new FileNotFoundException("No entry " + entry + " in " + tarball);
+    }
+
+    /**
+     * Unstashes into a fresh directory, since the stash can only be extracted under the parameter name,
+     * and several bindings of the same parameter may share a workspace at once.
+     */
     @Override protected FilePath createTempFile(Run<?, ?> build, FilePath tempDir, EnvVars env, Launcher launcher, TaskListener listener) throws IOException, InterruptedException {
-        StashManager.unstash(build, name, tempDir, launcher, env, listener);
-        return tempDir.child(name);
+        awaitStashed(build, listener);
+        FilePath dir = tempDir.createTempDir(name.length() >= 3 ? name : "fileparam", null);
+        long start = System.nanoTime();
+        try {
+            StashManager.unstash(build, stashName(), dir, launcher, env, listener);
+        } catch (IOException | InterruptedException | RuntimeException x) {
+            dir.deleteRecursive();
+            throw x;
+        }
+        FileParameterMetrics.unstash(start);
+        return dir.child(entry());
+    }
+
+    /**
+     * Starts stashing in the background as soon as a build is initialized, so that the content is usually ready when first needed.
+     */
+    @Extension
+    public static class StashingRunListener extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onInitialize(Run<?, ?> r) {
+            ParametersAction pa = r.getAction(ParametersAction.class);
+            if (pa != null) {
+                pa.getAllParameters().stream()
+                        .filter(p -> p instanceof StashedFileParameterValue)
+                        .forEach(p -> ((StashedFileParameterValue) p).startStashing(r));
+            }
+        }
+    }
+
+    /**
+     * Waits for a parameter still being stashed before {@code unstash} of that very stash runs, as that step reads the stash directly.
+     * Environment computation does not wait, and neither do other steps or unstashing anything else,
+     * so only a build unstashing a parameter in the first moments after it starts ever blocks on this.
+     * A listener cannot defer a step, so the wait happens before the step starts;
+     * it gives way as soon as the build is aborted, failing the step rather than letting it read a partial stash.
+     */
+    @Extension
+    public static class UnstashListener implements StepListener {
+
+        /** How often a wait checks whether the build has been aborted, in milliseconds. */
+        private static final long POLL = 1000;
+
+        @Override
+        public void notifyOfNewStep(@NonNull Step step, @NonNull StepContext context) {
+            if (!"unstash".equals(step.getDescriptor().getFunctionName())) {
+                return;
+            }
+            try {
+                Object stash = step.getDescriptor().defineArguments(step).get("name");
+                Run<?, ?> r = context.get(Run.class);
+                ParametersAction pa = r != null ? r.getAction(ParametersAction.class) : null;
+                if (stash == null || pa == null) {
+                    return;
+                }
+                for (ParameterValue p : pa.getAllParameters()) {
+                    if (p instanceof StashedFileParameterValue sp && sp.stashName().equals(stash)) {
+                        await(sp, r, context);
+                        return;
+                    }
+                }
+            } catch (IOException | RuntimeException x) {
+                // already reported, or unstash will fail to find the stash
+                LOGGER.log(Level.FINE, null, x);
+            } catch (InterruptedException x) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static void await(StashedFileParameterValue p, Run<?, ?> r, StepContext context) throws IOException, InterruptedException {
+            Future<?> stashing = p.startStashing(r);
+            while (!stashing.isDone()) {
+                Executor executor = Executor.of(r);
+                List<CauseOfInterruption> causes = executor != null ? executor.getCausesOfInterruption() : List.of();
+                if (!causes.isEmpty() || !r.isBuilding()) {
+                    context.onFailure(new FlowInterruptedException(Result.ABORTED, causes.toArray(new CauseOfInterruption[0])));
+                    return;
+                }
+                try {
+                    stashing.get(POLL, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException | ExecutionException x) {
+                    // check for an abort again, or report the failure below
+                }
+            }
+            TaskListener listener = context.get(TaskListener.class);
+            p.awaitStashed(r, listener != null ? listener : TaskListener.NULL);
+        }
+    }
+
+    /**
+     * Deletes content which will never be stashed, as its queue item is gone.
+     * @param kept values to leave alone, as they are still in use by another queue item
+     */
+    private static void discardAll(List<ParametersAction> actions, Set<ParameterValue> kept, Queue.Task task) {
+        actions.forEach(a -> {
+            a.getAllParameters().stream()
+                    .filter(p -> p instanceof StashedFileParameterValue && !kept.contains(p))
+                    .map(p -> (StashedFileParameterValue) p)
+                    .forEach(p -> {
+                        String tmp = p.tmpFile;
+                        try {
+                            p.discard();
+                        } catch (IOException | IllegalArgumentException e) {
+                            LOGGER.log(Level.WARNING, "Unable to delete temporary file {0} for parameter {1} of task {2}",
+                                    new Object[]{tmp, p.getName(), task.getName()});
+                        }
+                    });
+        });
     }
 
     @Extension
@@ -104,24 +455,54 @@ public final class StashedFileParameterValue extends AbstractFileParameterValue
         @Override
         public void onLeft(Queue.LeftItem li) {
             if (li.isCancelled()) {
-                List<ParametersAction> actions = li.getActions(ParametersAction.class);
-                actions.forEach(a -> {
-                    a.getAllParameters().stream()
-                            .filter(p -> p instanceof StashedFileParameterValue)
-                            .map(p -> (StashedFileParameterValue) p)
-                            .forEach(p -> {
-                                if (p.tmpFile != null) {
-                                    File tmp = new File(p.tmpFile);
-                                    try {
-                                        FileUtils.deleteDirectory(tmp.getParentFile());
-                                    } catch (IOException | IllegalArgumentException e) {
-                                        LOGGER.log(Level.WARNING, "Unable to delete temporary file {0} for parameter {1} of task {2}",
-                                                new Object[]{tmp.getAbsolutePath(), p.getName(), li.task.getName()});
-                                    }
-                                }
-                            });
-                });
+                discardAll(li.getActions(ParametersAction.class), Set.of(), li.task);
             }
         }
+
+        /**
+         * The item was not folded into another, so it no longer needs {@link DiscardOnFold}.
+         */
+        @Override
+        public void onEnterWaiting(Queue.WaitingItem wi) {
+            wi.getActions(DiscardOnFold.class).forEach(wi::removeAction);
+        }
+    }
+
+    /**
+     * Lets {@link DiscardOnFold} see whether a request to schedule a build with stashed file parameters
+     * is folded into an identical queue item.
+     */
+    @Extension
+    public static class FoldingDecisionHandler extends Queue.QueueDecisionHandler {
+
+        @Override
+        public boolean shouldSchedule(Queue.Task p, List<Action> actions) {
+            boolean stashed = actions.stream()
+                    .filter(a -> a instanceof ParametersAction)
+                    .anyMatch(a -> ((ParametersAction) a).getAllParameters().stream().anyMatch(v -> v instanceof StashedFileParameterValue));
+            if (stashed && actions.stream().noneMatch(a -> a instanceof DiscardOnFold)) {
+                try {
+                    actions.add(new DiscardOnFold());
+                } catch (UnsupportedOperationException x) {
+                    // not scheduled through Queue.schedule2; StashedFileSweeper deletes the content if it is dropped
+                    LOGGER.log(Level.FINE, null, x);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Deletes the content of stashed file parameters which are dropped since an identical queue item already exists,
+     * rather than leaving it to {@link StashedFileSweeper}.
+     */
+    static final class DiscardOnFold extends InvisibleAction implements FoldableAction {
+
+        @Override
+        public void foldIntoExisting(Queue.Item item, Queue.Task owner, List<Action> otherActions) {
+            Set<ParameterValue> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+            item.getActions(ParametersAction.class).forEach(a -> kept.addAll(a.getAllParameters()));
+            discardAll(Util.filter(otherActions, ParametersAction.class), kept, owner);
+        }
     }
 }
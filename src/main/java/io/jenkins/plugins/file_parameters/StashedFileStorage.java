@@ -0,0 +1,403 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.file_parameters;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.AbortException;
+import hudson.Functions;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import jenkins.model.Jenkins;
+import org.apache.commons.fileupload2.core.FileItem;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Storage of uploads for {@link StashedFileParameterValue} until they are stashed into their build.
+ * <p>Content is kept once per SHA-256 under {@code blobs/}.
+ * Each pending value gets a private directory holding a hard link to the blob named like the parameter,
+ * so it can be stashed as is, and the link count of the blob serves as its reference count.
+ * On file systems which do not report link counts the content is simply moved into the private directory.
+ * <p>The total size of distinct files stored here is kept up to date as content is added and removed,
+ * and checked against {@link FileParametersConfiguration#getPendingQuota}.
+ * Each private directory records in {@link #RESERVED} how much of that total it accounts for,
+ * which is freed exactly when the directory is deleted, whatever else has been written into it meanwhile.
+ */
+final class StashedFileStorage {
+
+    private static final Logger LOGGER = Logger.getLogger(StashedFileStorage.class.getName());
+
+    /** Guards creation and deletion of links to blobs. */
+    static final Object LOCK = new Object();
+
+    /** Bytes stored under a given root, counting hard links to the same file once; computed on first use. */
+    private record Usage(@NonNull File root, @NonNull AtomicLong bytes) {}
+
+    private static volatile Usage usage;
+
+    /** Name of a pending file which is a stash of another build rather than the content itself. */
+    static final String TARBALL = "stash.tar.gz";
+
+    /** Name of the file in a private directory holding the number of bytes reserved for it. */
+    static final String RESERVED = ".reserved";
+
+    record Stored(@NonNull File file, long size, @NonNull String sha256, @CheckForNull String md5) {}
+
+    private StashedFileStorage() {}
+
+    static @NonNull File root() {
+        return new File(Jenkins.get().getRootDir(), "stashedFileParameterValueFiles");
+    }
+
+    private static @NonNull Path blobs() {
+        return root().toPath().resolve("blobs");
+    }
+
+    /**
+     * Saves content for a pending parameter value.
+     * @return a file named {@code name} in a directory of its own
+     */
+    static @NonNull Stored store(@NonNull String name, @NonNull InputStream src) throws IOException {
+        Path tmp = Files.createTempFile(blobsDir(), "upload", ".tmp");
+        ReservingInputStream reserving = new ReservingInputStream(src);
+        boolean committed = false;
+        try {
+            AbstractFileParameterValue.Digests digests = new AbstractFileParameterValue.Digests();
+            long size;
+            try (InputStream in = digests.digesting(reserving)) {
+                size = Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Stored stored = commit(name, tmp, size, digests.sha256Hex(), digests.md5Hex());
+            committed = true;
+            return stored;
+        } finally {
+            Files.deleteIfExists(tmp);
+            if (!committed) {
+                free(reserving.reserved);
+            }
+        }
+    }
+
+    /**
+     * Saves an upload for a pending parameter value.
+     * If the upload has been spooled to disk, the spool file is moved into place rather than copied,
+     * so it is only read again to compute its digest.
+     * The upload is consumed either way.
+     * @return a file named {@code name} in a directory of its own
+     */
+    static @NonNull Stored store(@NonNull String name, @NonNull FileItem item) throws IOException {
+        if (item.isInMemory()) {
+            try (InputStream in = item.getInputStream()) {
+                return store(name, in);
+            } finally {
+                item.delete();
+            }
+        }
+        long reserved = item.getSize();
+        try {
+            reserve(reserved);
+        } catch (AbortException x) {
+            item.delete();
+            throw x;
+        }
+        Path tmp = Files.createTempFile(blobsDir(), "upload", ".tmp");
+        boolean committed = false;
+        try {
+            // DiskFileItem.write moves the spool file, falling back to a copy across file systems.
+            Files.delete(tmp);
+            item.write(tmp);
+            AbstractFileParameterValue.Digests digests = new AbstractFileParameterValue.Digests();
+            long size;
+            try (InputStream in = digests.digesting(Files.newInputStream(tmp))) {
+                size = IOUtils.consume(in);
+            }
+            Stored stored = commit(name, tmp, size, digests.sha256Hex(), digests.md5Hex());
+            committed = true;
+            return stored;
+        } finally {
+            Files.deleteIfExists(tmp);
+            item.delete();
+            if (!committed) {
+                free(reserved);
+            }
+        }
+    }
+
+    /**
+     * Takes over a file of known content, such as a completed {@link ChunkedUploads.Upload}, for a pending parameter value.
+     * @param src a file elsewhere under {@link #root}, which is moved rather than copied, and already {@linkplain #reserve reserved}
+     * @return a file named {@code name} in a directory of its own
+     */
+    static @NonNull Stored adopt(@NonNull String name, @NonNull Path src, long size, @NonNull String sha256, @CheckForNull String md5) throws IOException {
+        blobsDir();
+        return commit(name, src, size, sha256, md5);
+    }
+
+    /**
+     * Takes over a stash of another build for a pending parameter value, sharing rather than copying its content where possible.
+     * The result must be copied, not linked, into the stashes of the build it is passed to.
+     * @param tarball a stash as laid out by {@link org.jenkinsci.plugins.workflow.flow.StashManager}
+     * @param mayChange whether the stash may still be rewritten, which {@code StashManager} does in place, so that it must be copied
+     * @return a file named {@link #TARBALL} in a directory of its own
+     */
+    static @NonNull File link(@NonNull File tarball, boolean mayChange) throws IOException {
+        long size = tarball.length();
+        reserve(size);
+        boolean linked = false;
+        try {
+            synchronized (LOCK) {
+                Path dir = Files.createTempDirectory(Files.createDirectories(root().toPath()), null);
+                Path file = dir.resolve(TARBALL);
+                if (mayChange) {
+                    Files.copy(tarball.toPath(), file);
+                } else {
+                    linkOrCopy(tarball.toPath(), file);
+                }
+                markReserved(dir, size);
+                linked = true;
+                return file.toFile();
+            }
+        } finally {
+            if (!linked) {
+                free(size);
+            }
+        }
+    }
+
+    /**
+     * Makes a hard link if the file system allows it, else a copy.
+     */
+    static void linkOrCopy(@NonNull Path src, @NonNull Path dest) throws IOException {
+        try {
+            Files.createLink(dest, src);
+        } catch (UnsupportedOperationException | IOException x) {
+            LOGGER.log(Level.FINE, "could not link " + src + ", copying", x);
+            Files.copy(src, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static @NonNull Path blobsDir() throws IOException {
+        Path blobs = blobs();
+        Files.createDirectories(blobs);
+        return blobs;
+    }
+
+    /**
+     * Moves fully written content from a temporary file under {@link #root} to its final location.
+     * The temporary file must have been {@linkplain #reserve reserved}; if its content is already stored, it is freed.
+     */
+    private static @NonNull Stored commit(@NonNull String name, @NonNull Path tmp, long size, @NonNull String sha256, @CheckForNull String md5) throws IOException {
+        Path blobs = blobs();
+        synchronized (LOCK) {
+            Path dir = Files.createTempDirectory(root().toPath(), null);
+            Path file = dir.resolve(name);
+            boolean countsLinks = countsLinks(blobs);
+            // where content is shared, the blob accounts for it, and is freed along with it
+            markReserved(dir, countsLinks ? 0 : size);
+            if (countsLinks) {
+                Path blob = blobs.resolve(sha256);
+                if (Files.exists(blob)) {
+                    LOGGER.fine(() -> "reusing " + blob + " for " + name);
+                    Files.delete(tmp);
+                    free(size);
+                } else {
+                    Files.move(tmp, blob, StandardCopyOption.ATOMIC_MOVE);
+                }
+                Files.createLink(file, blob);
+            } else {
+                Files.move(tmp, file);
+            }
+            return new Stored(file.toFile(), size, sha256, md5);
+        }
+    }
+
+    /**
+     * Deletes the private directory of a pending value, and its blob if nothing else refers to it any more.
+     * @param file as returned by {@link #store}
+     * @param sha256 the digest of its content, if known
+     */
+    static void release(@NonNull File file, @CheckForNull String sha256) throws IOException {
+        synchronized (LOCK) {
+            File dir = file.getParentFile();
+            if (dir.isDirectory()) {
+                free(reserved(dir.toPath()));
+            }
+            FileUtils.deleteDirectory(dir);
+            if (sha256 == null) {
+                return;
+            }
+            Path blob = blobs().resolve(sha256);
+            try {
+                if (countsLinks(blob) && (Integer) Files.getAttribute(blob, "unix:nlink") <= 1) {
+                    LOGGER.fine(() -> "deleting unreferenced " + blob);
+                    long size = Files.size(blob);
+                    Files.delete(blob);
+                    free(size);
+                }
+            } catch (NoSuchFileException x) {
+                // never stored as a blob, or already gone
+            } catch (IOException | RuntimeException x) {
+                LOGGER.log(Level.WARNING, "Could not check references to " + blob, x);
+            }
+        }
+    }
+
+    private static void markReserved(@NonNull Path dir, long bytes) throws IOException {
+        Files.writeString(dir.resolve(RESERVED), Long.toString(bytes));
+    }
+
+    /**
+     * @param dir a private directory
+     * @return the number of bytes to {@linkplain #free} when it is deleted
+     */
+    static long reserved(@NonNull Path dir) throws IOException {
+        try {
+            return Long.parseLong(Files.readString(dir.resolve(RESERVED)).trim());
+        } catch (NoSuchFileException | NumberFormatException x) {
+            // left over from a crash between creating the directory and recording its reservation
+            return countsLinks(dir) ? sizeOf(dir.resolve(TARBALL)) : FileUtils.sizeOfDirectory(dir.toFile());
+        }
+    }
+
+    private static long sizeOf(@NonNull Path file) throws IOException {
+        return Files.isRegularFile(file) ? Files.size(file) : 0;
+    }
+
+    static boolean countsLinks(Path path) throws IOException {
+        return Files.getFileStore(path).supportsFileAttributeView("unix");
+    }
+
+    /**
+     * @return the number of bytes currently stored
+     */
+    static long usage() {
+        return counter().get();
+    }
+
+    private static @NonNull AtomicLong counter() {
+        File root = root();
+        Usage u = usage;
+        if (u == null || !u.root().equals(root)) {
+            synchronized (LOCK) {
+                u = usage;
+                if (u == null || !u.root().equals(root)) {
+                    usage = u = new Usage(root, new AtomicLong(scan()));
+                }
+            }
+        }
+        return u.bytes();
+    }
+
+    /**
+     * Measures what is left over from before a restart, once.
+     */
+    private static long scan() {
+        Path root = root().toPath();
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        Set<Object> seen = new HashSet<>();
+        long total = 0;
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                BasicFileAttributes attrs = Files.readAttributes(f, BasicFileAttributes.class);
+                if (attrs.isRegularFile() && !f.getFileName().toString().equals(RESERVED) && (attrs.fileKey() == null || seen.add(attrs.fileKey()))) {
+                    total += attrs.size();
+                }
+            }
+        } catch (IOException | RuntimeException x) {
+            LOGGER.log(Level.WARNING, "Could not measure " + root, x);
+        }
+        return total;
+    }
+
+    /**
+     * Accounts for content about to be written.
+     * @throws AbortException if that would exceed the quota, in which case nothing is accounted
+     */
+    static void reserve(long bytes) throws AbortException {
+        AtomicLong counter = counter();
+        long quota = FileParametersConfiguration.get().getPendingQuota() * 1024 * 1024;
+        long total = counter.addAndGet(bytes);
+        if (quota > 0 && bytes > 0 && total > quota) {
+            counter.addAndGet(-bytes);
+            throw new AbortException("Storage for pending file parameters is full (" + Functions.humanReadableByteSize(total - bytes) + " of "
+                    + Functions.humanReadableByteSize(quota) + " in use); try again once queued builds have started");
+        }
+    }
+
+    /**
+     * Accounts for content deleted.
+     */
+    static void free(long bytes) {
+        counter().updateAndGet(u -> Math.max(0, u - bytes));
+    }
+
+    /**
+     * Reserves content as it is read from a stream of unknown length, failing as soon as the quota would be exceeded.
+     */
+    private static final class ReservingInputStream extends FilterInputStream {
+
+        long reserved;
+
+        ReservingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                reserve(1);
+                reserved++;
+            }
+            return b;
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                reserve(n);
+                reserved += n;
+            }
+            return n;
+        }
+
+    }
+
+}
@@ -0,0 +1,272 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.file_parameters;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.Functions;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.Executor;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Deletes content under {@link StashedFileStorage#root} which nothing refers to any more,
+ * such as uploads for queue items lost in a crash, or abandoned {@link ChunkedUploads}.
+ * <p>Runs shortly after startup and then periodically.
+ * An entry is only considered once it has not been modified for a grace period,
+ * so content being uploaded before its queue item exists is left alone.
+ * Deletions are spaced out so as not to compete with builds for disk I/O.
+ */
+@Extension
+public final class StashedFileSweeper extends AsyncPeriodicWork {
+
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    static long RECURRENCE_PERIOD = SystemProperties.getLong(StashedFileSweeper.class.getName() + ".recurrencePeriod", TimeUnit.HOURS.toMillis(1));
+
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    static long GRACE_PERIOD = SystemProperties.getLong(StashedFileSweeper.class.getName() + ".gracePeriod", TimeUnit.HOURS.toMillis(1));
+
+    /** How long an incomplete or unclaimed chunked upload is kept after it was last written to. */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    static long UPLOAD_EXPIRY = SystemProperties.getLong(StashedFileSweeper.class.getName() + ".uploadExpiry", TimeUnit.DAYS.toMillis(1));
+
+    /** Pause after each deletion. */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    static long PAUSE = SystemProperties.getLong(StashedFileSweeper.class.getName() + ".pause", 100);
+
+    public StashedFileSweeper() {
+        super("Stashed file parameter sweeper");
+    }
+
+    @Override public long getRecurrencePeriod() {
+        return RECURRENCE_PERIOD;
+    }
+
+    /** Reconcile soon after startup, once the queue has been reloaded. */
+    @Override public long getInitialDelay() {
+        return Math.min(RECURRENCE_PERIOD, TimeUnit.MINUTES.toMillis(2));
+    }
+
+    @Override protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        Path root = StashedFileStorage.root().toPath();
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Set<Path> referenced = referencedDirs();
+        long now = System.currentTimeMillis();
+        Sweep sweep = new Sweep(listener);
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (name.equals("blobs") || name.equals("uploads") || referenced.contains(entry)) {
+                    continue;
+                }
+                if (now - lastModified(entry) > GRACE_PERIOD) {
+                    sweep.pending(entry);
+                }
+            }
+        }
+        Path uploads = ChunkedUploads.root();
+        if (Files.isDirectory(uploads)) {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(uploads)) {
+                for (Path entry : entries) {
+                    if (now - lastModified(entry) > UPLOAD_EXPIRY) {
+                        sweep.delete(entry, StashedFileSweeper::size);
+                    }
+                }
+            }
+        }
+        // After private directories, so that links to blobs from orphans are gone.
+        sweep.blobs(root.resolve("blobs"), now);
+        listener.getLogger().printf("Reclaimed %s in %d entries%n", Functions.humanReadableByteSize(sweep.bytes), sweep.entries);
+    }
+
+    /**
+     * Collects private directories of values in the queue, or in builds which may not have stashed them yet.
+     */
+    private static @NonNull Set<Path> referencedDirs() {
+        List<ParametersAction> actions = new ArrayList<>();
+        for (Queue.Item item : Queue.getInstance().getItems()) {
+            actions.addAll(item.getActions(ParametersAction.class));
+        }
+        for (Computer c : Jenkins.get().getComputers()) {
+            List<Executor> executors = new ArrayList<>(c.getExecutors());
+            executors.addAll(c.getOneOffExecutors());
+            for (Executor e : executors) {
+                if (e.getCurrentExecutable() instanceof Run<?, ?> r) {
+                    actions.addAll(r.getActions(ParametersAction.class));
+                }
+            }
+        }
+        Set<Path> dirs = new HashSet<>();
+        for (ParametersAction a : actions) {
+            for (ParameterValue v : a.getAllParameters()) {
+                if (v instanceof StashedFileParameterValue p) {
+                    File dir = p.pendingDir();
+                    if (dir != null) {
+                        dirs.add(dir.toPath());
+                    }
+                }
+            }
+        }
+        return dirs;
+    }
+
+    /**
+     * @return the latest modification time of a file or directory, or of anything directly inside the directory
+     */
+    private static long lastModified(Path entry) throws IOException {
+        long lastModified = Files.getLastModifiedTime(entry).toMillis();
+        if (Files.isDirectory(entry)) {
+            try (Stream<Path> children = Files.list(entry)) {
+                for (Path child : (Iterable<Path>) children::iterator) {
+                    lastModified = Math.max(lastModified, Files.getLastModifiedTime(child).toMillis());
+                }
+            }
+        }
+        return lastModified;
+    }
+
+    private static long size(Path entry) throws IOException {
+        return Files.isDirectory(entry) ? FileUtils.sizeOfDirectory(entry.toFile()) : Files.size(entry);
+    }
+
+    /** How much of {@link StashedFileStorage#usage} an entry accounts for. */
+    @FunctionalInterface
+    private interface Measure {
+        long size(Path entry) throws IOException;
+    }
+
+    private static final class Sweep {
+
+        private final TaskListener listener;
+        long entries;
+        long bytes;
+
+        Sweep(TaskListener listener) {
+            this.listener = listener;
+        }
+
+        void delete(Path entry, Measure measure) throws InterruptedException {
+            remove(entry, measure);
+            Thread.sleep(PAUSE);
+        }
+
+        /**
+         * Deletes a private directory, freeing what it recorded as reserved,
+         * while holding the lock {@link StashedFileStorage#release} uses so that it is not freed twice.
+         */
+        void pending(Path entry) throws InterruptedException {
+            synchronized (StashedFileStorage.LOCK) {
+                remove(entry, e -> Files.isDirectory(e) ? StashedFileStorage.reserved(e) : Files.size(e));
+            }
+            Thread.sleep(PAUSE);
+        }
+
+        private void remove(Path entry, Measure measure) {
+            try {
+                long size = measure.size(entry);
+                if (Files.isDirectory(entry)) {
+                    FileUtils.deleteDirectory(entry.toFile());
+                } else {
+                    Files.delete(entry);
+                }
+                listener.getLogger().println("Deleted orphaned " + entry);
+                entries++;
+                bytes += size;
+                StashedFileStorage.free(size);
+                FileParameterMetrics.swept(size);
+                FileParameterMetrics.cleanup(true);
+            } catch (NoSuchFileException x) {
+                // raced with normal cleanup
+            } catch (IOException | RuntimeException x) {
+                Functions.printStackTrace(x, listener.error("Could not delete " + entry));
+                FileParameterMetrics.cleanup(false);
+            }
+        }
+
+        /**
+         * Deletes blobs no longer linked from any private directory, and leftover temporary files.
+         * Blobs are only shared where the file system reports link counts.
+         */
+        void blobs(Path blobs, long now) throws IOException, InterruptedException {
+            if (!Files.isDirectory(blobs)) {
+                return;
+            }
+            boolean countsLinks = Files.getFileStore(blobs).supportsFileAttributeView("unix");
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(blobs)) {
+                for (Path blob : entries) {
+                    BasicFileAttributes attrs = Files.readAttributes(blob, BasicFileAttributes.class);
+                    if (now - attrs.lastModifiedTime().toMillis() <= GRACE_PERIOD) {
+                        continue;
+                    }
+                    if (blob.getFileName().toString().endsWith(".tmp") || countsLinks && (Integer) Files.getAttribute(blob, "unix:nlink") <= 1) {
+                        sweep(blob);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Checks the link count again while holding the lock {@link StashedFileStorage} uses to link to blobs.
+         */
+        private void sweep(Path blob) throws InterruptedException {
+            synchronized (StashedFileStorage.LOCK) {
+                try {
+                    if (blob.getFileName().toString().endsWith(".tmp") || (Integer) Files.getAttribute(blob, "unix:nlink") <= 1) {
+                        remove(blob, StashedFileSweeper::size);
+                    }
+                } catch (IOException x) {
+                    // gone already
+                }
+            }
+            Thread.sleep(PAUSE);
+        }
+
+    }
+
+}
@@ -24,25 +24,32 @@
 
 package io.jenkins.plugins.file_parameters;
 
+import hudson.Util;
 import hudson.cli.CLICommandInvoker;
 import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
+import hudson.model.ParameterValue;
 import hudson.model.ParametersAction;
 import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Queue;
 import hudson.tasks.Shell;
 import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
 import org.apache.commons.io.FileUtils;
 import org.htmlunit.FormEncodingType;
 import org.htmlunit.HttpMethod;
 import org.htmlunit.WebRequest;
+import org.htmlunit.WebResponse;
 import org.htmlunit.html.HtmlFileInput;
 import org.htmlunit.html.HtmlForm;
 import org.htmlunit.html.HtmlPage;
 import org.htmlunit.http.HttpStatus;
 import org.htmlunit.util.KeyDataPair;
+import org.htmlunit.util.NameValuePair;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.support.steps.input.InputAction;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.jvnet.hudson.test.Issue;
@@ -52,15 +59,31 @@ import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.lang.management.ManagementFactory;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 @WithJenkins
 class AbstractFileParameterDefinitionTest {
@@ -107,6 +130,65 @@ class AbstractFileParameterDefinitionTest {
         r.assertLogContains("received null: dXBsb2FkZWQgY29udGVudCBoZXJl", b);
     }
 
+    @Test
+    void metrics(JenkinsRule r) throws Exception {
+        WorkflowJob p = r.createProject(WorkflowJob.class, "myjob");
+        p.addProperty(new ParametersDefinitionProperty(new StashedFileParameterDefinition("FILE")));
+        p.setDefinition(new CpsFlowDefinition("node {withFileParameter('FILE') {echo(/received ${readFile(FILE)}/)}}", true));
+        assertThat(new CLICommandInvoker(r, "build").
+                withStdin(new ByteArrayInputStream("uploaded content here".getBytes())).
+                invokeWithArgs("-f", "-p", "FILE=", "myjob"),
+                CLICommandInvoker.Matcher.succeeded());
+        r.assertLogContains("received uploaded content here", p.getBuildByNumber(1));
+        ObjectName name = new ObjectName(FileParameterMetrics.OBJECT_NAME);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        TabularData uploads = (TabularData) server.getAttribute(name, "UploadBytes");
+        CompositeData stashed = (CompositeData) uploads.get(new Object[] {"StashedFileParameterDefinition"}).get("value");
+        assertThat((Long) stashed.get("total"), greaterThanOrEqualTo(21L));
+        assertThat((Long) stashed.get("p99"), greaterThanOrEqualTo((Long) stashed.get("p50")));
+        assertThat((Long) ((CompositeData) server.getAttribute(name, "StashMillis")).get("count"), greaterThanOrEqualTo(1L));
+        assertThat((Long) ((CompositeData) server.getAttribute(name, "TransferBytes")).get("total"), greaterThanOrEqualTo(21L));
+        assertThat((Long) server.getAttribute(name, "CleanupSuccesses"), greaterThanOrEqualTo(2L));
+    }
+
+    @Test
+    void cliBase64Argument(JenkinsRule r) throws Exception {
+        WorkflowJob p = r.createProject(WorkflowJob.class, "myjob");
+        p.addProperty(new ParametersDefinitionProperty(new Base64FileParameterDefinition("FILE"), new StashedFileParameterDefinition("BIG")));
+        p.setDefinition(new CpsFlowDefinition("echo(/received $FILE/); node {unstash 'BIG'; echo(/and ${readFile('BIG')}/)}", true));
+        assertThat(new CLICommandInvoker(r, "build").
+                invokeWithArgs("-f", "-p", "FILE=dXBsb2FkZWQgY29udGVudCBoZXJl", "-p", "BIG=bW9yZSBjb250ZW50", "myjob"),
+                CLICommandInvoker.Matcher.succeeded());
+        WorkflowRun b = p.getBuildByNumber(1);
+        assertNotNull(b);
+        r.assertLogContains("received dXBsb2FkZWQgY29udGVudCBoZXJl", b);
+        r.assertLogContains("and more content", b);
+        assertThat(new CLICommandInvoker(r, "build").
+                invokeWithArgs("-f", "-p", "FILE=not*base64", "myjob"),
+                CLICommandInvoker.Matcher.failedWith(1));
+    }
+
+    @Test
+    void cliMaxFileSize(JenkinsRule r) throws Exception {
+        WorkflowJob p = r.createProject(WorkflowJob.class, "myjob");
+        StashedFileParameterDefinition d = new StashedFileParameterDefinition("FILE");
+        d.setMaxFileSize(1);
+        p.addProperty(new ParametersDefinitionProperty(d));
+        p.setDefinition(new CpsFlowDefinition("echo 'ran'", true));
+        // an AbortException, which the CLI reports with exit code 5
+        CLICommandInvoker.Result result = new CLICommandInvoker(r, "build").
+                withStdin(new ByteArrayInputStream(new byte[1024 * 1024 + 1])).
+                invokeWithArgs("-f", "-p", "FILE=", "myjob");
+        assertThat(result, CLICommandInvoker.Matcher.failedWith(5));
+        assertThat(result.stderr(), containsString("exceeds the maximum size"));
+        assertNull(p.getBuildByNumber(1));
+        assertThat(StashedFileStorage.root().list((dir, name) -> !name.equals("blobs")), emptyArray());
+        assertThat(new CLICommandInvoker(r, "build").
+                withStdin(new ByteArrayInputStream(new byte[1024 * 1024])).
+                invokeWithArgs("-f", "-p", "FILE=", "myjob"),
+                CLICommandInvoker.Matcher.succeeded());
+    }
+
     @Test
     void rest(JenkinsRule r) throws Exception {
         r.jenkins.setSecurityRealm(r.createDummySecurityRealm());
@@ -127,6 +209,123 @@ class AbstractFileParameterDefinitionTest {
         r.assertLogContains("received myfile.txt: dXBsb2FkZWQgY29udGVudCBoZXJl", b);
     }
 
+    @Test
+    void restStreaming(JenkinsRule r) throws Exception {
+        AbstractFileParameterDefinition.STREAM_UPLOADS = true;
+        try {
+            r.jenkins.setSecurityRealm(r.createDummySecurityRealm());
+            r.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy().grant(Jenkins.ADMINISTER).everywhere().to("admin"));
+            WorkflowJob p = r.createProject(WorkflowJob.class, "myjob");
+            p.addProperty(new ParametersDefinitionProperty(new Base64FileParameterDefinition("FILE"), new StashedFileParameterDefinition("BIG")));
+            p.setDefinition(new CpsFlowDefinition("echo(/received $FILE_FILENAME: $FILE/); node {unstash 'BIG'; echo(/and $BIG_FILENAME: ${readFile('BIG')}/)}", true));
+            // Like: curl -u $auth -F FILE=@/tmp/f -F BIG=@/tmp/g $jenkins/job/myjob/buildWithParameters
+            WebRequest req = new WebRequest(new URL(r.getURL() + "job/myjob/buildWithParameters"), HttpMethod.POST);
+            File f = File.createTempFile("junit", null, tmp);
+            FileUtils.write(f, "uploaded content here", StandardCharsets.UTF_8);
+            File g = File.createTempFile("junit", null, tmp);
+            FileUtils.write(g, "more content", StandardCharsets.UTF_8);
+            req.setEncodingType(FormEncodingType.MULTIPART);
+            req.setRequestParameters(List.of(
+                    new KeyDataPair("FILE", f, "myfile.txt", "text/plain", StandardCharsets.UTF_8),
+                    new KeyDataPair("BIG", g, "big.txt", "text/plain", StandardCharsets.UTF_8)));
+            r.createWebClient().withBasicApiToken("admin").getPage(req);
+            r.waitUntilNoActivity();
+            WorkflowRun b = p.getBuildByNumber(1);
+            assertNotNull(b);
+            r.assertLogContains("received myfile.txt: dXBsb2FkZWQgY29udGVudCBoZXJl", b);
+            r.assertLogContains("and big.txt: more content", b);
+        } finally {
+            AbstractFileParameterDefinition.STREAM_UPLOADS = false;
+        }
+    }
+
+    @Test
+    void chunkedUpload(JenkinsRule r) throws Exception {
+        r.jenkins.setSecurityRealm(r.createDummySecurityRealm());
+        r.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy().grant(Jenkins.ADMINISTER).everywhere().to("admin"));
+        WorkflowJob p = r.createProject(WorkflowJob.class, "myjob");
+        p.addProperty(new ParametersDefinitionProperty(new StashedFileParameterDefinition("BIG")));
+        p.setDefinition(new CpsFlowDefinition("node {unstash 'BIG'; echo(/received $BIG_FILENAME: ${readFile('BIG')}/)}", true));
+        JenkinsRule.WebClient wc = r.createWebClient().withBasicApiToken("admin");
+        wc.setThrowExceptionOnFailingStatusCode(false);
+        assertThat(wc.getPage(new WebRequest(new URL(r.getURL() + "fileParameterUploads/create?job=myjob&name=OTHER&size=20"), HttpMethod.POST)).getWebResponse().getStatusCode(), is(400));
+        JSONObject created = post(wc, r.getURL() + "fileParameterUploads/create?job=myjob&name=BIG&size=20&filename=big.txt", null);
+        String upload = r.getURL() + "fileParameterUploads/" + created.getString("id") + "/";
+        // chunks may arrive in any order; a corrupted one is rejected and resent
+        assertThat(wc.getPage(chunk(upload, 8, "content here", "0000")).getWebResponse().getStatusCode(), is(400));
+        post(wc, upload + "chunk?offset=8&sha256=" + sha256("content here"), "content here");
+        JSONObject status = JSONObject.fromObject(wc.getPage(new URL(upload)).getWebResponse().getContentAsString());
+        assertThat(status.getJSONArray("received").toString(), is("[[8,20]]"));
+        assertThat(wc.getPage(new WebRequest(new URL(upload + "complete"), HttpMethod.POST)).getWebResponse().getStatusCode(), is(409));
+        post(wc, upload + "chunk?offset=0&sha256=" + sha256("uploaded"), "uploaded");
+        // the whole-file checksum is required
+        assertThat(wc.getPage(new WebRequest(new URL(upload + "complete"), HttpMethod.POST)).getWebResponse().getStatusCode(), is(400));
+        assertThat(post(wc, upload + "complete?sha256=" + sha256("uploadedcontent here"), null).getLong("size"), is(20L));
+        wc.getPage(new WebRequest(new URL(r.getURL() + "job/myjob/buildWithParameters?BIG_UPLOAD=" + created.getString("id")), HttpMethod.POST));
+        r.waitUntilNoActivity();
+        WorkflowRun b = p.getBuildByNumber(1);
+        assertNotNull(b);
+        r.assertLogContains("received big.txt: uploadedcontent here", b);
+        assertThat(ChunkedUploads.root().toFile().list(), emptyArray());
+    }
+
+    @Test
+    void inputHandles(JenkinsRule r) throws Exception {
+        r.jenkins.setSecurityRealm(r.createDummySecurityRealm());
+        r.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy().grant(Jenkins.ADMINISTER).everywhere().to("admin"));
+        WorkflowJob p = r.createProject(WorkflowJob.class, "myjob");
+        String pipeline = """
+                def upload = input message: 'upload', parameters: [stashedFile('BIG'), base64File(name: 'SMALL', handle: true)]
+                node {
+                  withFileParameter(name: 'BIG', file: upload.BIG) {
+                    echo(/big: ${readFile(BIG)}/)
+                  }
+                  withFileParameter(name: 'SMALL', file: upload.SMALL) {
+                    echo(/small: ${readFile(SMALL)}/)
+                  }
+                }""";
+        p.setDefinition(new CpsFlowDefinition(pipeline, true));
+        WorkflowRun b = p.scheduleBuild2(0).waitForStart();
+        r.waitForMessage("Input requested", b);
+        String id = b.getAction(InputAction.class).getExecutions().get(0).getId();
+        File big = File.createTempFile("junit", null, tmp);
+        FileUtils.write(big, "uploaded content here", StandardCharsets.UTF_8);
+        File small = File.createTempFile("junit", null, tmp);
+        FileUtils.write(small, "more content", StandardCharsets.UTF_8);
+        WebRequest req = new WebRequest(new URL(r.getURL() + b.getUrl() + "input/" + id + "/submit?proceed=Proceed"), HttpMethod.POST);
+        req.setEncodingType(FormEncodingType.MULTIPART);
+        req.setRequestParameters(List.of(
+                new NameValuePair("json", "{\"parameter\": [{\"name\": \"BIG\", \"file\": \"file0\"}, {\"name\": \"SMALL\", \"file\": \"file1\"}]}"),
+                new KeyDataPair("file0", big, "big.txt", "text/plain", StandardCharsets.UTF_8),
+                new KeyDataPair("file1", small, "small.txt", "text/plain", StandardCharsets.UTF_8)));
+        r.createWebClient().withBasicApiToken("admin").getPage(req);
+        r.assertBuildStatusSuccess(r.waitForCompletion(b));
+        r.assertLogContains("big: uploaded content here", b);
+        r.assertLogContains("small: more content", b);
+        // the Base64 payload is kept in the build directory rather than in program state
+        assertThat(new File(b.getRootDir(), "fileParameters").list().length, is(1));
+    }
+
+    private static WebRequest chunk(String upload, long offset, String content, String sha256) throws Exception {
+        WebRequest req = new WebRequest(new URL(upload + "chunk?offset=" + offset + "&sha256=" + sha256), HttpMethod.POST);
+        req.setRequestBody(content);
+        return req;
+    }
+
+    private static JSONObject post(JenkinsRule.WebClient wc, String url, String body) throws Exception {
+        WebRequest req = new WebRequest(new URL(url), HttpMethod.POST);
+        if (body != null) {
+            req.setRequestBody(body);
+        }
+        WebResponse rsp = wc.getPage(req).getWebResponse();
+        assertThat(rsp.getContentAsString(), rsp.getStatusCode(), is(200));
+        return JSONObject.fromObject(rsp.getContentAsString());
+    }
+
+    private static String sha256(String content) throws Exception {
+        return Util.toHexString(MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
     @Issue("https://github.com/jenkinsci/file-parameters-plugin/issues/26")
     @Test
     void restMissingValue(JenkinsRule r) throws Exception {
@@ -157,12 +356,90 @@ class AbstractFileParameterDefinitionTest {
         r.assertLogContains("got a message", b);
     }
 
+    @Test
+    void stashedBuildStep(JenkinsRule r) throws Exception {
+        WorkflowJob us = r.createProject(WorkflowJob.class, "us");
+        us.addProperty(new ParametersDefinitionProperty(new StashedFileParameterDefinition("FILE")));
+        us.setDefinition(new CpsFlowDefinition("build job: 'ds', parameters: [stashedFile(name: 'DATA', from: params.FILE)]", true));
+        WorkflowJob ds = r.createProject(WorkflowJob.class, "ds");
+        ds.addProperty(new ParametersDefinitionProperty(new StashedFileParameterDefinition("DATA")));
+        ds.setDefinition(new CpsFlowDefinition("node {withFileParameter('DATA') {echo(/got ${readFile(DATA)} with SHA-256 $env.DATA_SHA256/)}}", true));
+        assertThat(new CLICommandInvoker(r, "build").
+                withStdin(new ByteArrayInputStream("a message".getBytes())).
+                invokeWithArgs("-f", "-p", "FILE=", "us"),
+                CLICommandInvoker.Matcher.succeeded());
+        WorkflowRun b = ds.getBuildByNumber(1);
+        assertNotNull(b);
+        r.assertBuildStatusSuccess(b);
+        r.assertLogContains("got a message with SHA-256 " + Util.toHexString(MessageDigest.getInstance("SHA-256").digest("a message".getBytes())), b);
+        // the stash of a completed build can no longer change, so the pending value shares it by a link rather than copying it
+        FreeStyleBuild source = r.buildAndAssertSuccess(r.createFreeStyleProject("source"));
+        StashedFileParameterValue v = new StashedFileParameterValue("FILE", new ByteArrayInputStream("another message".getBytes()));
+        v.stashInto(source);
+        FileParameterHandle handle = (FileParameterHandle) v.getValue();
+        assertNotNull(handle);
+        StashedFileParameterValue linked = new StashedFileParameterValue("DATA");
+        linked.setFrom(handle);
+        File pending = new File(linked.pendingDir(), StashedFileStorage.TARBALL);
+        assertThat(fileKey(pending), is(fileKey(StashedFileParameterValue.stashTarball(source, handle.getStash()))));
+        b = r.assertBuildStatusSuccess(ds.scheduleBuild2(0, new ParametersAction(linked)));
+        r.assertLogContains("got another message", b);
+        // but the downstream build gets a copy of its own, which it may stash over without touching the source
+        assertThat(fileKey(StashedFileParameterValue.stashTarball(b, "DATA")), not(fileKey(StashedFileParameterValue.stashTarball(source, handle.getStash()))));
+    }
+
+    private static Object fileKey(File f) throws Exception {
+        return Files.readAttributes(f.toPath(), BasicFileAttributes.class).fileKey();
+    }
+
+    @Test
+    void download(JenkinsRule r) throws Exception {
+        WorkflowJob p = r.createProject(WorkflowJob.class, "myjob");
+        p.addProperty(new ParametersDefinitionProperty(new Base64FileParameterDefinition("FILE")));
+        p.setDefinition(new CpsFlowDefinition("", true));
+        assertThat(new CLICommandInvoker(r, "build").
+                withStdin(new ByteArrayInputStream("uploaded content here".getBytes())).
+                invokeWithArgs("-f", "-p", "FILE=", "myjob"),
+                CLICommandInvoker.Matcher.succeeded());
+        WorkflowRun b = p.getBuildByNumber(1);
+        assertNotNull(b);
+        JenkinsRule.WebClient wc = r.createWebClient();
+        WebResponse rsp = wc.goTo("job/myjob/1/parameters/parameter/FILE/download", "application/octet-stream").getWebResponse();
+        assertThat(rsp.getContentAsString(), is("uploaded content here"));
+        String etag = rsp.getResponseHeaderValue("ETag");
+        assertThat(etag, is("\"8e1eb9d232b84891fb25b4cb0882caaf63af89e520c5aaf1f5c331621bd63bfd\""));
+        WebRequest req = new WebRequest(new URL(r.getURL() + "job/myjob/1/parameters/parameter/FILE/download"));
+        req.setAdditionalHeader("Range", "bytes=9-15");
+        rsp = wc.getPage(req).getWebResponse();
+        assertThat(rsp.getStatusCode(), is(206));
+        assertThat(rsp.getResponseHeaderValue("Content-Range"), is("bytes 9-15/21"));
+        assertThat(rsp.getContentAsString(), is("content"));
+        req = new WebRequest(new URL(r.getURL() + "job/myjob/1/parameters/parameter/FILE/download"));
+        req.setAdditionalHeader("If-None-Match", etag);
+        assertThat(wc.getPage(req).getWebResponse().getStatusCode(), is(304));
+    }
+
+    @Test
+    void downloadStashed(JenkinsRule r) throws Exception {
+        WorkflowJob p = r.createProject(WorkflowJob.class, "myjob");
+        p.addProperty(new ParametersDefinitionProperty(new StashedFileParameterDefinition("FILE")));
+        p.setDefinition(new CpsFlowDefinition("pipeline {agent none; options {preserveStashes()}; stages {stage('x') {steps {echo 'ok'}}}}", true));
+        assertThat(new CLICommandInvoker(r, "build").
+                withStdin(new ByteArrayInputStream("uploaded content here".getBytes())).
+                invokeWithArgs("-f", "-p", "FILE=", "myjob"),
+                CLICommandInvoker.Matcher.succeeded());
+        WorkflowRun b = p.getBuildByNumber(1);
+        assertNotNull(b);
+        JenkinsRule.WebClient wc = r.createWebClient();
+        assertThat(wc.goTo("job/myjob/1/parameters/parameter/FILE/download", "application/octet-stream").getWebResponse().getContentAsString(), is("uploaded content here"));
+    }
+
     @Issue("https://github.com/jenkinsci/file-parameters-plugin/issues/116")
     @Test
     void freestyleWithShellStep(JenkinsRule r) throws Exception {
         FreeStyleProject project = r.createFreeStyleProject("test-base64-freestyle");
         project.addProperty(new ParametersDefinitionProperty(new Base64FileParameterDefinition("FILE")));
-        project.getBuildersList().add(new Shell("echo \"FILE=$FILE\""));
+        project.getBuildersList().add(new Shell("echo \"FILE=$FILE\"; echo \"FILE_SHA256=$FILE_SHA256\""));
 
         Base64FileParameterValue paramValue = new Base64FileParameterValue("FILE");
         paramValue.setBase64("amVua2lucwo=");
@@ -171,6 +448,42 @@ class AbstractFileParameterDefinitionTest {
 
         r.assertBuildStatusSuccess(build);
         r.assertLogContains("FILE=amVua2lucwo=", build);
+        r.assertLogContains("FILE_SHA256=83bbd81ba02cc92bf3c97602ad9f947f2a9e87d2a631e77d59cb842df2d90a9e", build);
+    }
+
+    @Test
+    void identicalQueueItemsCoalesce(JenkinsRule r) throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject("myjob");
+        p.addProperty(new ParametersDefinitionProperty(new StashedFileParameterDefinition("FILE")));
+        List<StashedFileParameterValue> scheduled = new ArrayList<>();
+        for (String content : new String[] {"same", "same", "other"}) {
+            StashedFileParameterValue v = new StashedFileParameterValue("FILE", new ByteArrayInputStream(content.getBytes()));
+            scheduled.add(v);
+            p.scheduleBuild2(1000, new ParametersAction(v));
+        }
+        assertThat(r.jenkins.getQueue().getItems().length, is(2));
+        // the content of the folded duplicate is deleted at once, that of the others kept
+        assertNotNull(scheduled.get(0).pendingDir());
+        assertNull(scheduled.get(1).pendingDir());
+        assertNotNull(scheduled.get(2).pendingDir());
+        for (Queue.Item item : r.jenkins.getQueue().getItems()) {
+            assertThat(item.getActions(StashedFileParameterValue.DiscardOnFold.class), empty());
+        }
+        r.jenkins.getQueue().clear();
+        Base64FileParameterDefinition d1 = new Base64FileParameterDefinition("FILE");
+        Base64FileParameterDefinition d2 = new Base64FileParameterDefinition("FILE");
+        assertThat(d1, is(d2));
+        assertThat(d1.hashCode(), is(d2.hashCode()));
+        d2.setExport(Base64FileParameterDefinition.Export.NONE);
+        assertThat(d1.equals(d2), is(false));
+        // a value whose digest is not yet known is only equal to itself, and keeps its hash code once the digest is computed
+        Base64FileParameterValue unknown = new Base64FileParameterValue("FILE");
+        assertThat(unknown.equals(new Base64FileParameterValue("FILE")), is(false));
+        Set<ParameterValue> values = new HashSet<>(Set.of(unknown));
+        int hash = unknown.hashCode();
+        unknown.setBase64("c2FtZQ==");
+        assertThat(unknown.hashCode(), is(hash));
+        assertThat(values.contains(unknown), is(true));
     }
 
 }
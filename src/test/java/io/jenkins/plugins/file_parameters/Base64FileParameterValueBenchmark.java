@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.file_parameters;
+
+import hudson.util.XStream2;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link Base64FileParameterValue} without a running Jenkins.
+ * {@link #create} covers streams of unknown length, such as CLI standard input,
+ * where the encoding buffer grows by doubling;
+ * {@link #createKnownSize} covers form uploads, where it is allocated once at its final length.
+ * {@code gc.alloc.rate.norm} from {@link org.openjdk.jmh.profile.GCProfiler} reports the total bytes allocated per operation,
+ * not the peak heap; run with {@code -prof gc} and compare the two to see what the size hint saves.
+ */
+@JmhBenchmark
+public class Base64FileParameterValueBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Payload {
+
+        @Param({"1024", "1048576", "52428800", "524288000"})
+        public int size;
+
+        byte[] data;
+        Base64FileParameterValue value;
+        String xml;
+
+        @Setup
+        public void setup() throws IOException {
+            data = new byte[size];
+            new Random(size).nextBytes(data);
+            value = new Base64FileParameterValue("FILE", new ByteArrayInputStream(data));
+            xml = XSTREAM.toXML(value);
+        }
+
+    }
+
+    private static final XStream2 XSTREAM = new XStream2();
+
+    @Benchmark
+    public Base64FileParameterValue create(Payload payload) throws IOException {
+        return new Base64FileParameterValue("FILE", new ByteArrayInputStream(payload.data));
+    }
+
+    @Benchmark
+    public Base64FileParameterValue createKnownSize(Payload payload) throws IOException {
+        return new Base64FileParameterValue("FILE", new ByteArrayInputStream(payload.data), payload.data.length);
+    }
+
+    @Benchmark
+    public Object xstreamRoundTrip(Payload payload) {
+        return XSTREAM.fromXML(XSTREAM.toXML(payload.value));
+    }
+
+    @Benchmark
+    public Object xstreamRead(Payload payload) {
+        return XSTREAM.fromXML(payload.xml);
+    }
+
+    @Benchmark
+    public void open(Payload payload, Blackhole bh) throws Exception {
+        try (InputStream in = payload.value.open(null)) {
+            bh.consume(IOUtils.consume(in));
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.file_parameters;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersAction;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.TaskListener;
+import hudson.remoting.Which;
+import hudson.slaves.DumbSlave;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.jvnet.hudson.test.SimpleCommandLauncher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Compares copying a file parameter to an agent with and without {@code compress}.
+ * The agent runs on the same machine, so this measures the CPU cost of compression rather than any saving on a slow link.
+ */
+@JmhBenchmark
+public class CompressedTransferBenchmark {
+
+    public static class AgentState extends JmhBenchmarkState {
+
+        @Param({"1048576", "67108864"})
+        public int size;
+
+        /** {@code text} compresses well; {@code random} does not, so is sent as is after sampling. */
+        @Param({"text", "random"})
+        public String content;
+
+        @Param({"false", "true"})
+        public boolean compress;
+
+        FreeStyleBuild build;
+        Base64FileParameterValue value;
+        FilePath tempDir;
+        Launcher launcher;
+
+        @Override public void setup() throws Exception {
+            byte[] data;
+            if (content.equals("text")) {
+                ByteArrayOutputStream text = new ByteArrayOutputStream(size);
+                for (int i = 0; text.size() < size; i++) {
+                    text.writeBytes(("[" + i + "] compiling module " + (i % 97) + " of the project\n").getBytes(StandardCharsets.US_ASCII));
+                }
+                data = text.toByteArray();
+            } else {
+                data = new byte[size];
+                new Random(size).nextBytes(data);
+            }
+            String java = System.getProperty("java.home") + "/bin/java";
+            DumbSlave agent = new DumbSlave("agent", Files.createTempDirectory("agent").toString(),
+                    new SimpleCommandLauncher("\"" + java + "\" -jar \"" + Which.jarFile(hudson.remoting.Launcher.class) + "\""));
+            getJenkins().addNode(agent);
+            agent.toComputer().connect(false).get();
+            FreeStyleProject p = getJenkins().createProject(FreeStyleProject.class, "p");
+            Base64FileParameterDefinition d = new Base64FileParameterDefinition("FILE");
+            d.setExport(Base64FileParameterDefinition.Export.NONE);
+            p.addProperty(new ParametersDefinitionProperty(d));
+            value = new Base64FileParameterValue("FILE", new ByteArrayInputStream(data));
+            value.setExport(Base64FileParameterDefinition.Export.NONE);
+            build = p.scheduleBuild2(0, new ParametersAction(value)).get();
+            tempDir = agent.getRootPath().child("tmp");
+            tempDir.mkdirs();
+            launcher = agent.createLauncher(TaskListener.NULL);
+        }
+
+    }
+
+    @Benchmark
+    public void createTempFile(AgentState state) throws Exception {
+        state.value.createTempFile(state.build, state.tempDir, new EnvVars(), state.launcher, TaskListener.NULL, state.compress).delete();
+    }
+
+}
@@ -24,11 +24,22 @@
 
 package io.jenkins.plugins.file_parameters;
 
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Util;
 import hudson.cli.CLICommandInvoker;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
 import hudson.model.Failure;
+import hudson.model.Fingerprint;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
 import hudson.model.ParameterDefinition;
+import hudson.model.ParametersAction;
 import hudson.model.ParametersDefinitionProperty;
 import hudson.model.Result;
+import hudson.model.TaskListener;
+import hudson.tasks.Fingerprinter;
 import org.apache.commons.io.FileUtils;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
@@ -36,15 +47,21 @@ import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.junit.jupiter.api.Test;
 import org.jvnet.hudson.test.Issue;
 import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
 import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @WithJenkins
 class FileParameterWrapperTest {
@@ -70,6 +87,84 @@ class FileParameterWrapperTest {
         r.assertLogContains("loaded 'UPLOADED CONTENT HERE' from ", b);
     }
 
+    @Test
+    void base64ExportMetadata(JenkinsRule r) throws Exception {
+        r.createSlave("remote", null, null);
+        WorkflowJob p = r.createProject(WorkflowJob.class, "myjob");
+        Base64FileParameterDefinition d = new Base64FileParameterDefinition("FILE");
+        d.setExport(Base64FileParameterDefinition.Export.METADATA);
+        p.addProperty(new ParametersDefinitionProperty(d));
+        String pipeline = """
+                echo(/env: $env.FILE $env.FILE_SIZE $env.FILE_SHA256/)
+                node('remote') {
+                  withFileParameter('FILE') {
+                    echo(/loaded '${readFile(FILE).toUpperCase(Locale.ROOT)}' from $FILE/)
+                  }
+                }""";
+        p.setDefinition(new CpsFlowDefinition(pipeline, true));
+        assertThat(new CLICommandInvoker(r, "build").
+                withStdin(new ByteArrayInputStream("uploaded content here".getBytes())).
+                invokeWithArgs("-f", "-p", "FILE=", "myjob"),
+                CLICommandInvoker.Matcher.succeeded());
+        WorkflowRun b = p.getBuildByNumber(1);
+        assertNotNull(b);
+        r.assertLogContains("env: null 21 8e1eb9d232b84891fb25b4cb0882caaf63af89e520c5aaf1f5c331621bd63bfd", b);
+        r.assertLogContains("loaded 'UPLOADED CONTENT HERE' from ", b);
+        // the mode is recorded on the value, so editing the job does not change what past builds export
+        d.setExport(Base64FileParameterDefinition.Export.BASE64);
+        assertNull(b.getEnvironment(TaskListener.NULL).get("FILE"));
+    }
+
+    @Test
+    void digestAndFingerprint(JenkinsRule r) throws Exception {
+        r.createSlave("remote", null, null);
+        WorkflowJob p = r.createProject(WorkflowJob.class, "myjob");
+        p.addProperty(new ParametersDefinitionProperty(new StashedFileParameterDefinition("FILE")));
+        String pipeline = """
+                node('remote') {
+                  withFileParameter('FILE') {
+                    echo(/loaded '${readFile(FILE)}' with SHA-256 $env.FILE_SHA256/)
+                  }
+                }""";
+        p.setDefinition(new CpsFlowDefinition(pipeline, true));
+        assertThat(new CLICommandInvoker(r, "build").
+                withStdin(new ByteArrayInputStream("uploaded content here".getBytes())).
+                invokeWithArgs("-f", "-p", "FILE=", "myjob"),
+                CLICommandInvoker.Matcher.succeeded());
+        WorkflowRun b = p.getBuildByNumber(1);
+        assertNotNull(b);
+        r.assertLogContains("loaded 'uploaded content here' with SHA-256 8e1eb9d232b84891fb25b4cb0882caaf63af89e520c5aaf1f5c331621bd63bfd", b);
+        String md5 = Util.getDigestOf("uploaded content here");
+        Fingerprint fp = r.jenkins.getFingerprintMap().get(md5);
+        assertNotNull(fp);
+        assertTrue(fp.getRangeSet("myjob").includes(1));
+        assertThat(b.getAction(Fingerprinter.FingerprintAction.class).getRecords().get("FILE"), is(md5));
+    }
+
+    @Test
+    void base64Compressed(JenkinsRule r) throws Exception {
+        r.createSlave("remote", null, null);
+        WorkflowJob p = r.createProject(WorkflowJob.class, "myjob");
+        p.addProperty(new ParametersDefinitionProperty(new Base64FileParameterDefinition("FILE")));
+        String pipeline = """
+                node('remote') {
+                  withFileParameter(name: 'FILE', compress: true) {
+                    def text = readFile(FILE)
+                    echo(/loaded ${text.length()} characters starting with '${text.substring(0, 9)}'/)
+                  }
+                }""";
+        p.setDefinition(new CpsFlowDefinition(pipeline, true));
+        assertThat(new CLICommandInvoker(r, "build").
+                withStdin(new ByteArrayInputStream("uploaded content here\n".repeat(10_000).getBytes())).
+                invokeWithArgs("-f", "-p", "FILE=", "myjob"),
+                CLICommandInvoker.Matcher.succeeded());
+        WorkflowRun b = p.getBuildByNumber(1);
+        assertNotNull(b);
+        r.assertLogContains("loaded 220000 characters starting with 'uploaded '", b);
+        r.assertLogNotContains("does not compress", b);
+        r.assertLogContains("Copied content of FILE compressed to ", b);
+    }
+
     @Test
     void base64UndefinedFail(JenkinsRule r) throws Exception {
         r.createSlave("remote", null, null);
@@ -190,6 +285,70 @@ class FileParameterWrapperTest {
         r.assertLogContains("loaded 'UPLOADED CONTENT HERE'", b);
     }
 
+    @Test
+    void stashedBoundConcurrently(JenkinsRule r) throws Exception {
+        r.createSlave("remote", null, null);
+        WorkflowJob p = r.createProject(WorkflowJob.class, "myjob");
+        p.addProperty(new ParametersDefinitionProperty(new StashedFileParameterDefinition("FILE")));
+        String pipeline = """
+                node('remote') {
+                  withFileParameter('FILE') {
+                    def outer = FILE
+                    withFileParameter('FILE') {
+                      echo(/distinct paths: ${outer != FILE}/)
+                    }
+                    echo(/outer still has '${readFile(outer)}'/)
+                  }
+                  parallel a: {
+                    withFileParameter('FILE') {echo(/a loaded '${readFile(FILE)}'/)}
+                  }, b: {
+                    withFileParameter('FILE') {echo(/b loaded '${readFile(FILE)}'/)}
+                  }
+                }""";
+        p.setDefinition(new CpsFlowDefinition(pipeline, true));
+        assertThat(new CLICommandInvoker(r, "build").
+                       withStdin(new ByteArrayInputStream("uploaded content here".getBytes())).
+                       invokeWithArgs("-f", "-p", "FILE=", "myjob"),
+                   CLICommandInvoker.Matcher.succeeded());
+        WorkflowRun b = p.getBuildByNumber(1);
+        assertNotNull(b);
+        r.assertLogContains("distinct paths: true", b);
+        r.assertLogContains("outer still has 'uploaded content here'", b);
+        r.assertLogContains("a loaded 'uploaded content here'", b);
+        r.assertLogContains("b loaded 'uploaded content here'", b);
+    }
+
+    @Test
+    void stashedCachedOnAgent(JenkinsRule r) throws Exception {
+        AgentFileCache.MAX_SIZE = 1024 * 1024;
+        try {
+            r.createSlave("remote", null, null);
+            WorkflowJob p = r.createProject(WorkflowJob.class, "myjob");
+            p.addProperty(new ParametersDefinitionProperty(new StashedFileParameterDefinition("FILE")));
+            String pipeline = """
+                    node('remote') {
+                      withFileParameter('FILE') {
+                        echo(/first '${readFile(FILE)}'/)
+                      }
+                      withFileParameter('FILE') {
+                        echo(/second '${readFile(FILE)}'/)
+                      }
+                    }""";
+            p.setDefinition(new CpsFlowDefinition(pipeline, true));
+            assertThat(new CLICommandInvoker(r, "build").
+                           withStdin(new ByteArrayInputStream("uploaded content here".getBytes())).
+                           invokeWithArgs("-f", "-p", "FILE=", "myjob"),
+                       CLICommandInvoker.Matcher.succeeded());
+            WorkflowRun b = p.getBuildByNumber(1);
+            assertNotNull(b);
+            r.assertLogContains("first 'uploaded content here'", b);
+            r.assertLogContains("Using cached copy of FILE", b);
+            r.assertLogContains("second 'uploaded content here'", b);
+        } finally {
+            AgentFileCache.MAX_SIZE = 0;
+        }
+    }
+
     @Test
     void stashedDeclarativeParameterCreated(JenkinsRule r) throws Exception {
         r.createSlave("remote", null, null);
@@ -275,4 +434,72 @@ class FileParameterWrapperTest {
         r.assertLogContains("loaded 'UPLOADED CONTENT HERE' from ", b);
     }
 
+    @Test
+    void stashedHandle(JenkinsRule r) throws Exception {
+        FreeStyleBuild source = r.buildAndAssertSuccess(r.createFreeStyleProject("source"));
+        StashedFileParameterValue v = new StashedFileParameterValue("FILE", new ByteArrayInputStream("uploaded content here".getBytes()));
+        v.setFilename("stuff.txt");
+        v.stashInto(source);
+        FileParameterHandle handle = (FileParameterHandle) v.getValue();
+        assertNotNull(handle);
+        assertEquals("stuff.txt", handle.getFilename());
+        assertEquals(21, handle.getSize());
+        FreeStyleProject p = r.createFreeStyleProject("myjob");
+        FileParameterWrapper w = new FileParameterWrapper("FILE");
+        w.setFile(handle);
+        p.getBuildWrappersList().add(w);
+        String[] content = new String[1];
+        p.getBuildersList().add(new TestBuilder() {
+            @Override public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                content[0] = new FilePath(launcher.getChannel(), build.getEnvironment(listener).get("FILE")).readToString();
+                return true;
+            }
+        });
+        r.buildAndAssertSuccess(p);
+        assertEquals("uploaded content here", content[0]);
+    }
+
+    @Test
+    void auto(JenkinsRule r) throws Exception {
+        WorkflowJob p = r.createProject(WorkflowJob.class, "myjob");
+        AutoFileParameterDefinition d = new AutoFileParameterDefinition("FILE");
+        d.setThreshold(1);
+        p.addProperty(new ParametersDefinitionProperty(d));
+        String pipeline = """
+                echo(/env: $env.FILE/)
+                node {
+                  withFileParameter('FILE') {
+                    echo(/loaded ${readFile(FILE).length()} characters/)
+                  }
+                }""";
+        p.setDefinition(new CpsFlowDefinition(pipeline, true));
+        for (int size : new int[] {1024, 1025}) {
+            assertThat(new CLICommandInvoker(r, "build").
+                    withStdin(new ByteArrayInputStream("x".repeat(size).getBytes())).
+                    invokeWithArgs("-f", "-p", "FILE=", "myjob"),
+                    CLICommandInvoker.Matcher.succeeded());
+        }
+        WorkflowRun b1 = p.getBuildByNumber(1);
+        assertThat(b1.getAction(ParametersAction.class).getParameter("FILE"), instanceOf(Base64FileParameterValue.class));
+        assertThat(b1.getAction(ParametersAction.class).getParameter("FILE").getValue(), instanceOf(FileParameterHandle.class));
+        r.assertLogContains("env: null", b1);
+        r.assertLogContains("loaded 1024 characters", b1);
+        WorkflowRun b2 = p.getBuildByNumber(2);
+        assertThat(b2.getAction(ParametersAction.class).getParameter("FILE"), instanceOf(StashedFileParameterValue.class));
+        assertThat(b2.getAction(ParametersAction.class).getParameter("FILE").getValue(), instanceOf(FileParameterHandle.class));
+        r.assertLogContains("env: null", b2);
+        r.assertLogContains("loaded 1025 characters", b2);
+        d.setThreshold(0);
+        assertEquals(0, d.getThreshold());
+        assertThat(new CLICommandInvoker(r, "build").
+                withStdin(new ByteArrayInputStream("x".getBytes())).
+                invokeWithArgs("-f", "-p", "FILE=", "myjob"),
+                CLICommandInvoker.Matcher.succeeded());
+        WorkflowRun b3 = p.getBuildByNumber(3);
+        assertThat(b3.getAction(ParametersAction.class).getParameter("FILE"), instanceOf(StashedFileParameterValue.class));
+        r.assertLogContains("loaded 1 characters", b3);
+        d.setThreshold(Long.MAX_VALUE);
+        assertEquals(AutoFileParameterDefinition.MAX_THRESHOLD, d.getThreshold());
+    }
+
 }
@@ -26,6 +26,7 @@ package io.jenkins.plugins.file_parameters;
 
 import hudson.ExtensionList;
 import hudson.model.Node;
+import hudson.model.ParametersAction;
 import hudson.model.ParametersDefinitionProperty;
 import hudson.model.Queue;
 import hudson.model.Result;
@@ -51,8 +52,13 @@ import org.jvnet.hudson.test.junit.jupiter.JenkinsSessionExtension;
 
 import java.io.File;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 @Issue("JENKINS-73161")
@@ -93,6 +99,34 @@ class RestartTest {
         });
     }
 
+    @Test
+    void externalizedBase64() throws Throwable {
+        Base64FileParameterValue.EXTERNALIZE = true;
+        try {
+            rr.then(r -> {
+                WorkflowJob p = r.createProject(WorkflowJob.class, "p");
+                p.addProperty(new ParametersDefinitionProperty(new Base64FileParameterDefinition("FILE")));
+                p.setDefinition(new CpsFlowDefinition("echo(/received $FILE/)", true));
+                Base64FileParameterValue v = new Base64FileParameterValue("FILE");
+                v.setBase64("dXBsb2FkZWQgY29udGVudCBoZXJl");
+                WorkflowRun b = r.assertBuildStatusSuccess(p.scheduleBuild2(0, new ParametersAction(v)));
+                r.assertLogContains("received dXBsb2FkZWQgY29udGVudCBoZXJl", b);
+                assertThat(FileUtils.readFileToString(new File(b.getRootDir(), "build.xml"), StandardCharsets.UTF_8), not(containsString("dXBsb2FkZWQgY29udGVudCBoZXJl")));
+                // reused as by a rebuild, so the payload must be copied rather than looked up in the new build only
+                WorkflowRun b2 = r.assertBuildStatusSuccess(p.scheduleBuild2(0, new ParametersAction(v)));
+                r.assertLogContains("received dXBsb2FkZWQgY29udGVudCBoZXJl", b2);
+                b.delete();
+                assertEquals("dXBsb2FkZWQgY29udGVudCBoZXJl", v.getValue());
+            });
+            rr.then(r -> {
+                WorkflowRun b = r.jenkins.getItemByFullName("p", WorkflowJob.class).getBuildByNumber(2);
+                assertEquals("dXBsb2FkZWQgY29udGVudCBoZXJl", b.getAction(ParametersAction.class).getParameter("FILE").getValue());
+            });
+        } finally {
+            Base64FileParameterValue.EXTERNALIZE = false;
+        }
+    }
+
     @Test
     void stashedFileIsRetained() throws Throwable {
         rr.then(r -> {
@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.file_parameters;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersAction;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.util.XStream2;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Random;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link StashedFileParameterValue} in a running Jenkins,
+ * along with download of both kinds of value over HTTP.
+ */
+@JmhBenchmark
+public class StashedFileParameterValueBenchmark {
+
+    private static final XStream2 XSTREAM = new XStream2();
+
+    public static class JenkinsState extends JmhBenchmarkState {
+
+        @Param({"1024", "1048576", "52428800", "524288000"})
+        public int size;
+
+        byte[] data;
+        FreeStyleBuild build;
+        StashedFileParameterValue value;
+        String downloads;
+        HttpClient client;
+
+        @Override public void setup() throws Exception {
+            data = new byte[size];
+            new Random(size).nextBytes(data);
+            FreeStyleProject p = getJenkins().createProject(FreeStyleProject.class, "p");
+            Base64FileParameterDefinition base64 = new Base64FileParameterDefinition("BASE64");
+            // keep the payload out of the build environment
+            base64.setExport(Base64FileParameterDefinition.Export.METADATA);
+            p.addProperty(new ParametersDefinitionProperty(new StashedFileParameterDefinition("STASHED"), base64));
+            value = new StashedFileParameterValue("STASHED", new ByteArrayInputStream(data));
+            build = p.scheduleBuild2(0, new ParametersAction(value, new Base64FileParameterValue("BASE64", new ByteArrayInputStream(data)))).get();
+            value.awaitStashed(build);
+            downloads = getJenkinsURL() + "job/p/1/parameters/parameter/";
+            client = HttpClient.newHttpClient();
+        }
+
+    }
+
+    @Benchmark
+    public void create(JenkinsState state) throws IOException {
+        new StashedFileParameterValue("FILE", new ByteArrayInputStream(state.data)).discard();
+    }
+
+    @Benchmark
+    public Object xstreamRoundTrip(JenkinsState state) {
+        return XSTREAM.fromXML(XSTREAM.toXML(state.value));
+    }
+
+    @Benchmark
+    public void open(JenkinsState state, Blackhole bh) throws Exception {
+        try (InputStream in = state.value.open(state.build)) {
+            bh.consume(IOUtils.consume(in));
+        }
+    }
+
+    @Benchmark
+    public void downloadStashed(JenkinsState state, Blackhole bh) throws Exception {
+        download(state, "STASHED", bh);
+    }
+
+    @Benchmark
+    public void downloadBase64(JenkinsState state, Blackhole bh) throws Exception {
+        download(state, "BASE64", bh);
+    }
+
+    private static void download(JenkinsState state, String name, Blackhole bh) throws Exception {
+        HttpResponse<InputStream> rsp = state.client.send(HttpRequest.newBuilder(URI.create(state.downloads + name + "/download")).build(), HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream in = rsp.body()) {
+            if (rsp.statusCode() != 200) {
+                throw new IOException("HTTP " + rsp.statusCode());
+            }
+            bh.consume(IOUtils.consume(in));
+        }
+    }
+
+}
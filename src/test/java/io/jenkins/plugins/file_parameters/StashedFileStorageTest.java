@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.file_parameters;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.ExtensionList;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersAction;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.TaskListener;
+import hudson.util.StreamTaskListener;
+import org.jenkinsci.plugins.workflow.flow.StashManager;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@WithJenkins
+class StashedFileStorageTest {
+
+    @Test
+    void deduplicates(JenkinsRule r) throws Exception {
+        File root = StashedFileStorage.root();
+        StashedFileStorage.Stored a = StashedFileStorage.store("FILE", new ByteArrayInputStream("same content".getBytes()));
+        StashedFileStorage.Stored b = StashedFileStorage.store("FILE", new ByteArrayInputStream("same content".getBytes()));
+        assertEquals(a.sha256(), b.sha256());
+        assertEquals(12, a.size());
+        assertNotEquals(a.file(), b.file());
+        assertEquals("same content", Files.readString(b.file().toPath()));
+        File blob = new File(root, "blobs/" + a.sha256());
+        assumeTrue(blob.isFile(), "file system does not count links");
+        assertTrue(Files.isSameFile(a.file().toPath(), blob.toPath()));
+        assertTrue(Files.isSameFile(b.file().toPath(), blob.toPath()));
+        StashedFileStorage.release(a.file(), a.sha256());
+        assertFalse(a.file().getParentFile().exists());
+        assertTrue(blob.isFile());
+        StashedFileStorage.release(b.file(), b.sha256());
+        assertFalse(blob.exists());
+    }
+
+    @Test
+    void stashLayout(JenkinsRule r) throws Exception {
+        FreeStyleBuild b = r.buildAndAssertSuccess(r.createFreeStyleProject());
+        FilePath dir = new FilePath(Files.createTempDirectory("stash").toFile());
+        dir.child("FILE").write("stashed content", "UTF-8");
+        StashManager.stash(b, "some-stash", dir, new Launcher.LocalLauncher(TaskListener.NULL), new EnvVars(), TaskListener.NULL, "FILE", null, false, false);
+        File tarball = StashedFileParameterValue.stashTarball(b, "some-stash");
+        assertNotNull(tarball);
+        assertTrue(tarball.isFile(), "StashManager no longer stores stashes where StashedFileParameterValue reads them");
+        dir.deleteRecursive();
+    }
+
+    @Test
+    void sweepsOrphans(JenkinsRule r) throws Exception {
+        long grace = StashedFileSweeper.GRACE_PERIOD;
+        long pause = StashedFileSweeper.PAUSE;
+        StashedFileSweeper.GRACE_PERIOD = -1;
+        StashedFileSweeper.PAUSE = 0;
+        try {
+            FreeStyleProject p = r.createFreeStyleProject();
+            p.addProperty(new ParametersDefinitionProperty(new StashedFileParameterDefinition("FILE")));
+            StashedFileParameterValue queued = new StashedFileParameterValue("FILE", new ByteArrayInputStream("queued".getBytes()));
+            p.scheduleBuild2(1000, new ParametersAction(queued));
+            StashedFileStorage.Stored orphan = StashedFileStorage.store("FILE", new ByteArrayInputStream("orphaned".getBytes()));
+            ByteArrayOutputStream log = new ByteArrayOutputStream();
+            ExtensionList.lookupSingleton(StashedFileSweeper.class).execute(new StreamTaskListener(log, StandardCharsets.UTF_8));
+            assertThat(log.toString(StandardCharsets.UTF_8), containsString("Deleted orphaned " + orphan.file().getParentFile()));
+            assertFalse(orphan.file().getParentFile().exists());
+            assertFalse(new File(StashedFileStorage.root(), "blobs/" + orphan.sha256()).exists());
+            assertTrue(queued.pendingDir().isDirectory());
+        } finally {
+            StashedFileSweeper.GRACE_PERIOD = grace;
+            StashedFileSweeper.PAUSE = pause;
+        }
+    }
+
+    @Test
+    void freesWhatWasReserved(JenkinsRule r) throws Exception {
+        long grace = StashedFileSweeper.GRACE_PERIOD;
+        long pause = StashedFileSweeper.PAUSE;
+        StashedFileSweeper.GRACE_PERIOD = -1;
+        StashedFileSweeper.PAUSE = 0;
+        try {
+            FreeStyleBuild b = r.buildAndAssertSuccess(r.createFreeStyleProject());
+            FilePath dir = new FilePath(Files.createTempDirectory("stash").toFile());
+            dir.child("FILE").write("stashed content", "UTF-8");
+            StashManager.stash(b, "some-stash", dir, new Launcher.LocalLauncher(TaskListener.NULL), new EnvVars(), TaskListener.NULL, "FILE", null, false, false);
+            dir.deleteRecursive();
+            File tarball = StashedFileParameterValue.stashTarball(b, "some-stash");
+            // released after something else was unpacked next to it
+            File released = StashedFileStorage.link(tarball, false);
+            assertEquals(tarball.length(), StashedFileStorage.usage());
+            Files.writeString(Files.createDirectory(released.getParentFile().toPath().resolve("unpacked")).resolve("FILE"), "stashed content");
+            StashedFileStorage.release(released, null);
+            assertEquals(0, StashedFileStorage.usage());
+            // swept even where the file system counts links
+            File swept = StashedFileStorage.link(tarball, false);
+            assertEquals(tarball.length(), StashedFileStorage.usage());
+            ExtensionList.lookupSingleton(StashedFileSweeper.class).execute(TaskListener.NULL);
+            assertFalse(swept.exists());
+            assertEquals(0, StashedFileStorage.usage());
+        } finally {
+            StashedFileSweeper.GRACE_PERIOD = grace;
+            StashedFileSweeper.PAUSE = pause;
+        }
+    }
+
+    @Test
+    void quota(JenkinsRule r) throws Exception {
+        FileParametersConfiguration.get().setPendingQuota(1);
+        byte[] data = new byte[700 * 1024];
+        StashedFileStorage.Stored a = StashedFileStorage.store("FILE", new ByteArrayInputStream(data));
+        assertEquals(data.length, StashedFileStorage.usage());
+        data[0] = 1;
+        assertThrows(AbortException.class, () -> StashedFileStorage.store("FILE", new ByteArrayInputStream(data)));
+        assertEquals(data.length, StashedFileStorage.usage());
+        StashedFileStorage.release(a.file(), a.sha256());
+        assertEquals(0, StashedFileStorage.usage());
+        StashedFileStorage.Stored c = StashedFileStorage.store("FILE", new ByteArrayInputStream(data));
+        assertEquals(data.length, StashedFileStorage.usage());
+        StashedFileStorage.release(c.file(), c.sha256());
+    }
+
+}